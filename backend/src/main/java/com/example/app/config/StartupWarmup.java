@@ -0,0 +1,129 @@
+package com.example.app.config;
+
+import com.example.app.service.HtmlScanner;
+import com.example.app.service.LLMService;
+import com.example.app.service.StartupMetrics;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.io.StringReader;
+import java.util.List;
+import java.util.Map;
+import okhttp3.HttpUrl;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+/**
+ * 启动预热：应用就绪后在后台线程中走一遍JSON序列化、HTTP和HTML解析的热点路径，
+ * 让懒加载的Bean提前创建、JIT提前编译，避免用户的第一个问题承担这些开销
+ */
+@Component
+public class StartupWarmup {
+  private static final Logger log = LoggerFactory.getLogger(StartupWarmup.class);
+  private static final String SAMPLE_COMPLETION = "{\"choices\":[{\"message\":{\"role\":\"assistant\",\"content\":null,"
+      + "\"tool_calls\":[{\"id\":\"call_0\",\"type\":\"function\",\"function\":{\"name\":\"search_web\","
+      + "\"arguments\":\"{\\\"query\\\":\\\"北京天气\\\"}\"}}]},\"finish_reason\":\"tool_calls\"}],"
+      + "\"usage\":{\"prompt_tokens\":120,\"completion_tokens\":16,\"prompt_cache_hit_tokens\":64}}";
+  private static final String SAMPLE_CHUNK = "{\"choices\":[{\"delta\":{\"content\":\"今天\"},\"finish_reason\":null}]}";
+  private static final HttpUrl SAMPLE_BASE = HttpUrl.get("https://www.baidu.com/s");
+  private static final String SAMPLE_HTML = "<html><body><h3><a href=\"/a\">标题</a></h3><p>摘要内容</p></body></html>";
+
+  private final ObjectProvider<LLMService> llmService;
+  private final ObjectMapper objectMapper;
+  private final OkHttpClient okHttpClient;
+  private final StartupMetrics startupMetrics;
+
+  @Value("${startup.warmup.enabled:false}")
+  private boolean enabled; // 是否在启动后预热
+
+  @Value("${startup.warmup.iterations:300}")
+  private int iterations; // JSON与HTML路径的预热次数
+
+  /**
+   * 构造函数
+   *
+   * @param llmService     LLM服务，懒加载模式下由预热线程提前创建
+   * @param objectMapper   Jackson对象映射器
+   * @param okHttpClient   OkHttp客户端实例
+   * @param startupMetrics 启动统计
+   */
+  public StartupWarmup(ObjectProvider<LLMService> llmService, ObjectMapper objectMapper,
+      OkHttpClient okHttpClient, StartupMetrics startupMetrics) {
+    this.llmService = llmService;
+    this.objectMapper = objectMapper;
+    this.okHttpClient = okHttpClient;
+    this.startupMetrics = startupMetrics;
+  }
+
+  @EventListener
+  public void onReady(ApplicationReadyEvent event) {
+    if (!enabled) {
+      return;
+    }
+    int port = event.getApplicationContext() instanceof WebServerApplicationContext web
+        ? web.getWebServer().getPort()
+        : -1;
+    Thread thread = new Thread(() -> warmUp(port), "startup-warmup");
+    thread.setDaemon(true);
+    thread.start();
+  }
+
+  private void warmUp(int port) {
+    long start = System.nanoTime();
+    try {
+      llmService.getObject();
+      warmJson();
+      warmHtml();
+      if (port > 0) {
+        warmHttp(port);
+      }
+    } catch (Exception error) {
+      log.warn("Warm-up failed: {}", error.getMessage());
+    }
+    startupMetrics.recordWarmup(System.nanoTime() - start);
+  }
+
+  private void warmJson() throws Exception {
+    Map<String, Object> payload = Map.of(
+        "model", "warmup",
+        "messages", List.of(
+            Map.of("role", "system", "content", "系统提示"),
+            Map.of("role", "user", "content", "北京今天天气怎么样")),
+        "stream", true);
+    for (int i = 0; i < iterations; i++) {
+      objectMapper.writeValueAsString(payload);
+      JsonNode completion = objectMapper.readTree(SAMPLE_COMPLETION);
+      completion.path("choices").path(0).path("message").path("tool_calls").toString();
+      objectMapper.readTree(SAMPLE_CHUNK).path("choices").path(0).path("delta").path("content").asText();
+      objectMapper.writeValueAsString(Map.of("delta", "今天", "finish", false));
+    }
+  }
+
+  private void warmHtml() throws Exception {
+    for (int i = 0; i < iterations; i++) {
+      HtmlScanner.extractResults(new StringReader(SAMPLE_HTML), 3, Long.MAX_VALUE, SAMPLE_BASE);
+    }
+  }
+
+  /**
+   * 通过回环地址请求自身的健康检查接口，预热Tomcat、DispatcherServlet、消息转换器与OkHttp连接
+   */
+  private void warmHttp(int port) throws Exception {
+    Request request = new Request.Builder().url("http://127.0.0.1:" + port + "/api/health").build();
+    for (int i = 0; i < 20; i++) {
+      try (Response response = okHttpClient.newCall(request).execute()) {
+        if (response.body() != null) {
+          objectMapper.readTree(response.body().string());
+        }
+      }
+    }
+  }
+}
@@ -2,13 +2,24 @@ package com.example.app.controller;
 
 import com.example.app.model.AskRequest;
 import com.example.app.model.Result;
+import com.example.app.service.ClusterService;
+import com.example.app.service.ConcurrencyLimiter;
 import com.example.app.service.LLMService;
+import com.example.app.service.SseEmitterRegistry;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import java.util.LinkedHashMap;
+import java.util.Map;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RestController;
 import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
@@ -19,30 +30,62 @@ import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 public class AskController {
   private static final Logger log = LoggerFactory.getLogger(AskController.class);
   private final LLMService llmService;
+  private final ClusterService clusterService;
+  private final SseEmitterRegistry emitterRegistry;
+  private final ConcurrencyLimiter concurrencyLimiter;
 
   /**
    * 构造函数
    * 
-   * @param llmService LLM服务实例，用于处理AI问答逻辑
+   * @param llmService     LLM服务实例，用于处理AI问答逻辑
+   * @param clusterService 集群路由服务，会话不归属本节点时转发
+   * @param emitterRegistry SSE发射器注册表，负责心跳与超时清理
+   * @param concurrencyLimiter 自适应并发限制，超出时拒绝新的问答
    */
-  public AskController(LLMService llmService) {
+  public AskController(LLMService llmService, ClusterService clusterService, SseEmitterRegistry emitterRegistry,
+      ConcurrencyLimiter concurrencyLimiter) {
     this.llmService = llmService;
+    this.clusterService = clusterService;
+    this.emitterRegistry = emitterRegistry;
+    this.concurrencyLimiter = concurrencyLimiter;
   }
 
   /**
    * AI问答接口，返回SSE流式响应
    * 
-   * @param request 包含问题和会话ID的请求体
+   * <p>需要调用模型的问答数达到自适应上限时返回503，附带Retry-After重试间隔和提示消息。
+   * 
+   * @param request   包含问题和会话ID的请求体
+   * @param clientKey 客户端API Key，用于按调用方计量token用量
+   * @param forwardedBy 转发来源节点，已被转发过的请求总在本节点处理
+   * @param servletRequest HTTP请求，用于取得客户端地址
+   * @param response  HTTP响应，拒绝时设置状态码
    * @return SseEmitter 用于发送流式响应
    */
   @PostMapping(path = "/api/ask", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
-  public SseEmitter ask(@RequestBody AskRequest request) {
-    // 创建SSE发射器，设置超时时间为0（永不超时）
-    SseEmitter emitter = new SseEmitter(0L);
+  public SseEmitter ask(@RequestBody AskRequest request,
+      @RequestHeader(value = "X-API-Key", required = false) String clientKey,
+      @RequestHeader(value = ClusterService.FORWARDED_HEADER, required = false) String forwardedBy,
+      HttpServletRequest servletRequest, HttpServletResponse response) {
+    // 创建SSE发射器，由注册表负责心跳、空闲超时与总时长限制
+    SseEmitter emitter = emitterRegistry.create(request.getSessionId());
+    String clientAddress = clientAddress(servletRequest, forwardedBy);
     try {
       log.info("Incoming ask request {}", request.getSessionId());
-      // 调用LLM服务处理问答请求
-      llmService.streamAnswer(request.getQuestion(), request.getSessionId(), emitter);
+      // 会话归属其他节点时转发，保证同一会话总在同一节点处理
+      String owner = forwardedBy == null ? clusterService.remoteOwner(request.getSessionId()) : null;
+      if (owner != null) {
+        log.info("Forwarding ask request {} to {}", request.getSessionId(), owner);
+        clusterService.forwardAsk(owner, request, clientKey, clientAddress, emitter,
+            () -> llmService.streamAnswer(request.getQuestion(), request.getSessionId(), clientKey, clientAddress,
+                emitter));
+        return emitter;
+      }
+      if (!llmService.streamAnswer(request.getQuestion(), request.getSessionId(), clientKey, clientAddress, emitter)) {
+        // 发射器返回前响应尚未提交，状态码与重试间隔随SSE响应头一起发出
+        response.setStatus(HttpStatus.SERVICE_UNAVAILABLE.value());
+        response.setHeader(HttpHeaders.RETRY_AFTER, String.valueOf(concurrencyLimiter.retryAfterSeconds()));
+      }
     } catch (Exception error) {
       log.error("Ask failed", error);
       try {
@@ -67,4 +110,42 @@ public class AskController {
     // 返回健康状态为ok
     return Result.ok("ok");
   }
+
+  /**
+   * 就绪检查接口，反映是否还能接收新的问答，供负载均衡器决定是否分流到本节点
+   * 
+   * @return 有空闲名额时返回200，否则返回503，数据中包含当前并发上限与进行中数量
+   */
+  @GetMapping("/api/ready")
+  public ResponseEntity<Result<Map<String, Object>>> ready() {
+    Map<String, Object> stats = concurrencyLimiter.stats();
+    Map<String, Object> readiness = new LinkedHashMap<>();
+    boolean ready = concurrencyLimiter.hasHeadroom();
+    readiness.put("status", ready ? "ok" : "busy");
+    readiness.put("limit", stats.get("limit"));
+    readiness.put("inFlight", stats.get("inFlight"));
+    readiness.put("headroom", stats.get("headroom"));
+    if (ready) {
+      return ResponseEntity.ok(Result.ok(readiness));
+    }
+    return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+        .header(HttpHeaders.RETRY_AFTER, String.valueOf(concurrencyLimiter.retryAfterSeconds()))
+        .body(new Result<>(-1, "服务繁忙", readiness));
+  }
+
+  /**
+   * 客户端地址：其他节点转发来的请求使用转发前的地址，只信任携带正确集群密钥的转发
+   *
+   * @param servletRequest HTTP请求
+   * @param forwardedBy    转发来源节点
+   * @return 客户端地址
+   */
+  private String clientAddress(HttpServletRequest servletRequest, String forwardedBy) {
+    String forwardedClient = servletRequest.getHeader(ClusterService.CLIENT_HEADER);
+    if (forwardedBy != null && forwardedClient != null
+        && clusterService.authorized(servletRequest.getHeader(ClusterService.SECRET_HEADER))) {
+      return forwardedClient;
+    }
+    return servletRequest.getRemoteAddr();
+  }
 }
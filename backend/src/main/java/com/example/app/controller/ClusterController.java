@@ -0,0 +1,79 @@
+package com.example.app.controller;
+
+import com.example.app.model.ClusterCacheEntry;
+import com.example.app.model.Result;
+import com.example.app.service.ClusterCache;
+import com.example.app.service.ClusterService;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PutMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+/**
+ * 集群内部接口，仅供其他节点调用，需携带节点间共享密钥
+ */
+@RestController
+public class ClusterController {
+  private final ClusterService clusterService;
+  private final ClusterCache clusterCache;
+
+  /**
+   * 构造函数
+   *
+   * @param clusterService 集群成员与路由服务
+   * @param clusterCache   集群共享缓存
+   */
+  public ClusterController(ClusterService clusterService, ClusterCache clusterCache) {
+    this.clusterService = clusterService;
+    this.clusterCache = clusterCache;
+  }
+
+  /**
+   * 节点存活探测
+   *
+   * @param secret 节点间共享密钥
+   * @return 本节点地址
+   */
+  @GetMapping("/internal/cluster/ping")
+  public Result<String> ping(@RequestHeader(value = ClusterService.SECRET_HEADER, required = false) String secret) {
+    if (!clusterService.authorized(secret)) {
+      return Result.error("未授权");
+    }
+    return Result.ok(clusterService.self());
+  }
+
+  /**
+   * 读取本节点存放的缓存条目
+   *
+   * @param secret 节点间共享密钥
+   * @param key    缓存键
+   * @return 缓存值，未命中时data为空
+   */
+  @GetMapping("/internal/cache")
+  public Result<String> get(@RequestHeader(value = ClusterService.SECRET_HEADER, required = false) String secret,
+      @RequestParam("key") String key) {
+    if (!clusterService.authorized(secret)) {
+      return Result.error("未授权");
+    }
+    return Result.ok(clusterCache.getLocal(key));
+  }
+
+  /**
+   * 写入本节点存放的缓存条目
+   *
+   * @param secret 节点间共享密钥
+   * @param entry  缓存条目
+   * @return 写入结果
+   */
+  @PutMapping("/internal/cache")
+  public Result<String> put(@RequestHeader(value = ClusterService.SECRET_HEADER, required = false) String secret,
+      @RequestBody ClusterCacheEntry entry) {
+    if (!clusterService.authorized(secret)) {
+      return Result.error("未授权");
+    }
+    clusterCache.putLocal(entry.getKey(), entry.getValue(), entry.getTtlMillis());
+    return Result.ok("ok");
+  }
+}
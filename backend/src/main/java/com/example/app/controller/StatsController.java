@@ -0,0 +1,180 @@
+package com.example.app.controller;
+
+import com.example.app.model.Result;
+import com.example.app.service.ClusterCache;
+import com.example.app.service.ClusterService;
+import com.example.app.service.ConcurrencyLimiter;
+import com.example.app.service.LocalIntentRouter;
+import com.example.app.service.SemanticAnswerCache;
+import com.example.app.service.SseEmitterRegistry;
+import com.example.app.service.StartupMetrics;
+import com.example.app.service.ToolRegistry;
+import com.example.app.service.ToolResultCompactor;
+import com.example.app.service.ToolSpeculator;
+import com.example.app.service.UsageMeter;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+/**
+ * 运行统计控制器，暴露计量、缓存等内部指标
+ */
+@RestController
+public class StatsController {
+  private final UsageMeter usageMeter;
+  private final SemanticAnswerCache semanticCache;
+  private final StartupMetrics startupMetrics;
+  private final ToolRegistry toolRegistry;
+  private final ToolSpeculator toolSpeculator;
+  private final ToolResultCompactor toolResultCompactor;
+  private final LocalIntentRouter intentRouter;
+  private final ClusterService clusterService;
+  private final ClusterCache clusterCache;
+  private final SseEmitterRegistry emitterRegistry;
+  private final ConcurrencyLimiter concurrencyLimiter;
+
+  /**
+   * 构造函数
+   *
+   * @param usageMeter     token计量服务
+   * @param semanticCache  语义答案缓存
+   * @param startupMetrics 启动统计
+   * @param toolRegistry   工具注册表
+   * @param toolSpeculator 工具预执行服务
+   * @param toolResultCompactor 工具结果压缩
+   * @param intentRouter   本地意图路由
+   * @param clusterService 集群成员与路由服务
+   * @param clusterCache   集群共享缓存
+   * @param emitterRegistry SSE发射器注册表
+   * @param concurrencyLimiter 自适应并发限制
+   */
+  public StatsController(UsageMeter usageMeter, SemanticAnswerCache semanticCache,
+      StartupMetrics startupMetrics, ToolRegistry toolRegistry, ToolSpeculator toolSpeculator,
+      ToolResultCompactor toolResultCompactor, LocalIntentRouter intentRouter, ClusterService clusterService,
+      ClusterCache clusterCache, SseEmitterRegistry emitterRegistry, ConcurrencyLimiter concurrencyLimiter) {
+    this.usageMeter = usageMeter;
+    this.semanticCache = semanticCache;
+    this.startupMetrics = startupMetrics;
+    this.toolRegistry = toolRegistry;
+    this.toolSpeculator = toolSpeculator;
+    this.toolResultCompactor = toolResultCompactor;
+    this.intentRouter = intentRouter;
+    this.clusterService = clusterService;
+    this.clusterCache = clusterCache;
+    this.emitterRegistry = emitterRegistry;
+    this.concurrencyLimiter = concurrencyLimiter;
+  }
+
+  /**
+   * token用量统计接口
+   *
+   * @return 按调用方聚合的token用量
+   */
+  @GetMapping("/api/stats/usage")
+  public Result<Map<String, Map<String, Object>>> usage() {
+    return Result.ok(usageMeter.snapshot());
+  }
+
+  /**
+   * 提示词缓存统计接口
+   *
+   * @return 上游提示词缓存的命中率、费用节省比例与延迟对比
+   */
+  @GetMapping("/api/stats/prompt-cache")
+  public Result<Map<String, Object>> promptCache() {
+    return Result.ok(usageMeter.promptCacheStats());
+  }
+
+  /**
+   * 语义缓存统计接口
+   *
+   * @return 条目数、索引内存、查询耗时与命中率
+   */
+  @GetMapping("/api/stats/semantic-cache")
+  public Result<Map<String, Object>> semanticCache() {
+    return Result.ok(semanticCache.stats());
+  }
+
+  /**
+   * 启动统计接口
+   *
+   * @return 启动耗时、预热耗时与首个请求的首字延迟
+   */
+  @GetMapping("/api/stats/startup")
+  public Result<Map<String, Object>> startup() {
+    return Result.ok(startupMetrics.stats());
+  }
+
+  /**
+   * 工具调用统计接口
+   *
+   * @return 各工具的调用次数、缓存命中、超时与平均耗时
+   */
+  @GetMapping("/api/stats/tools")
+  public Result<Map<String, Map<String, Object>>> tools() {
+    return Result.ok(toolRegistry.stats());
+  }
+
+  /**
+   * 工具预执行统计接口
+   *
+   * @return 预测次数、命中率与节省的等待时间
+   */
+  @GetMapping("/api/stats/speculation")
+  public Result<Map<String, Object>> speculation() {
+    return Result.ok(toolSpeculator.stats());
+  }
+
+  /**
+   * 工具结果压缩统计接口
+   *
+   * @return 压缩轮数与累计删去的字节、token、重复句子数
+   */
+  @GetMapping("/api/stats/compaction")
+  public Result<Map<String, Object>> compaction() {
+    return Result.ok(toolResultCompactor.stats());
+  }
+
+  /**
+   * 本地意图统计接口
+   *
+   * @return 各意图的命中次数、交给模型的次数与本地回答耗时
+   */
+  @GetMapping("/api/stats/local-intents")
+  public Result<Map<String, Object>> localIntents() {
+    return Result.ok(intentRouter.stats());
+  }
+
+  /**
+   * 集群状态接口
+   *
+   * @return 成员、存活节点、转发与共享缓存统计
+   */
+  @GetMapping("/api/stats/cluster")
+  public Result<Map<String, Object>> cluster() {
+    Map<String, Object> stats = new LinkedHashMap<>(clusterService.stats());
+    stats.put("cache", clusterCache.stats());
+    return Result.ok(stats);
+  }
+
+  /**
+   * 并发限制统计接口
+   *
+   * @return 当前并发上限、进行中数量、拒绝次数与首字延迟分位数
+   */
+  @GetMapping("/api/stats/concurrency")
+  public Result<Map<String, Object>> concurrency() {
+    return Result.ok(concurrencyLimiter.stats());
+  }
+
+  /**
+   * 流式响应统计接口
+   *
+   * @return 活跃连接数、心跳次数与按原因分类的清理数
+   */
+  @GetMapping("/api/stats/streams")
+  public Result<Map<String, Object>> streams() {
+    return Result.ok(emitterRegistry.stats());
+  }
+}
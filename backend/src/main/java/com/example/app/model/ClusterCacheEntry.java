@@ -0,0 +1,42 @@
+package com.example.app.model;
+
+/**
+ * 节点间传输的共享缓存条目
+ */
+public class ClusterCacheEntry {
+  private String key; // 缓存键
+  private String value; // 缓存值
+  private long ttlMillis; // 剩余有效期毫秒数
+
+  public ClusterCacheEntry() {}
+
+  public ClusterCacheEntry(String key, String value, long ttlMillis) {
+    this.key = key;
+    this.value = value;
+    this.ttlMillis = ttlMillis;
+  }
+
+  public String getKey() {
+    return key;
+  }
+
+  public void setKey(String key) {
+    this.key = key;
+  }
+
+  public String getValue() {
+    return value;
+  }
+
+  public void setValue(String value) {
+    this.value = value;
+  }
+
+  public long getTtlMillis() {
+    return ttlMillis;
+  }
+
+  public void setTtlMillis(long ttlMillis) {
+    this.ttlMillis = ttlMillis;
+  }
+}
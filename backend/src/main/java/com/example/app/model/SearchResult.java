@@ -0,0 +1,51 @@
+package com.example.app.model;
+
+/**
+ * 一条网页搜索结果
+ */
+public class SearchResult {
+  private String title; // 标题
+  private String url; // 链接
+  private String snippet; // 搜索页上的摘要
+  private String content; // 抓取到的页面正文，未抓取时为空
+
+  public SearchResult() {}
+
+  public SearchResult(String title, String url, String snippet) {
+    this.title = title;
+    this.url = url;
+    this.snippet = snippet;
+  }
+
+  public String getTitle() {
+    return title;
+  }
+
+  public void setTitle(String title) {
+    this.title = title;
+  }
+
+  public String getUrl() {
+    return url;
+  }
+
+  public void setUrl(String url) {
+    this.url = url;
+  }
+
+  public String getSnippet() {
+    return snippet;
+  }
+
+  public void setSnippet(String snippet) {
+    this.snippet = snippet;
+  }
+
+  public String getContent() {
+    return content;
+  }
+
+  public void setContent(String content) {
+    this.content = content;
+  }
+}
@@ -0,0 +1,56 @@
+package com.example.app.model;
+
+/**
+ * 一次模型调用的token用量
+ */
+public class TokenUsage {
+  private long promptTokens; // 输入token数
+  private long completionTokens; // 输出token数
+  private long cachedTokens; // 命中提示词缓存的输入token数
+  private boolean estimated; // 是否为本地估算值
+
+  public TokenUsage() {}
+
+  public TokenUsage(long promptTokens, long completionTokens, long cachedTokens, boolean estimated) {
+    this.promptTokens = promptTokens;
+    this.completionTokens = completionTokens;
+    this.cachedTokens = cachedTokens;
+    this.estimated = estimated;
+  }
+
+  public long getTotalTokens() {
+    return promptTokens + completionTokens;
+  }
+
+  public long getPromptTokens() {
+    return promptTokens;
+  }
+
+  public void setPromptTokens(long promptTokens) {
+    this.promptTokens = promptTokens;
+  }
+
+  public long getCompletionTokens() {
+    return completionTokens;
+  }
+
+  public void setCompletionTokens(long completionTokens) {
+    this.completionTokens = completionTokens;
+  }
+
+  public long getCachedTokens() {
+    return cachedTokens;
+  }
+
+  public void setCachedTokens(long cachedTokens) {
+    this.cachedTokens = cachedTokens;
+  }
+
+  public boolean isEstimated() {
+    return estimated;
+  }
+
+  public void setEstimated(boolean estimated) {
+    this.estimated = estimated;
+  }
+}
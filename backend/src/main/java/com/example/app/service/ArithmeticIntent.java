@@ -0,0 +1,69 @@
+package com.example.app.service;
+
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import org.springframework.stereotype.Component;
+
+/**
+ * 四则运算：问题去掉“计算”“等于多少”等提示语后只剩算式时，直接用calc工具的求值器计算
+ */
+@Component
+public class ArithmeticIntent implements LocalIntent {
+  private static final Pattern PREFIX = Pattern.compile("^(?:请)?(?:帮我)?(?:计算|算一下|算算|求)[:\\s]*");
+  private static final Pattern SUFFIX = Pattern.compile(
+      "(?:的结果)?(?:等于多少|等于几|是多少|是几|得多少|得几|=\\s*\\?|=)?[\\s?。!]*$");
+  private static final Pattern EXPRESSION = Pattern.compile("[\\d.\\s()+\\-*/^%]+");
+  private static final Pattern OPERATOR = Pattern.compile("[\\d)]\\s*([-+*/^%])\\s*[\\d(.]");
+  private static final Pattern DATE_LIKE = Pattern.compile("\\d{4}-\\d{1,2}-\\d{1,2}");
+
+  private final ToolService toolService;
+
+  /**
+   * 构造函数
+   *
+   * @param toolService 工具服务，复用其中calc的表达式求值
+   */
+  public ArithmeticIntent(ToolService toolService) {
+    this.toolService = toolService;
+  }
+
+  @Override
+  public String name() {
+    return "arithmetic";
+  }
+
+  @Override
+  public String answer(String question) {
+    Matcher prefix = PREFIX.matcher(question);
+    boolean cued = prefix.find();
+    String expr = cued ? question.substring(prefix.end()) : question;
+    Matcher suffix = SUFFIX.matcher(expr);
+    if (suffix.find() && suffix.start() < expr.length()) {
+      cued |= suffix.group().contains("多少") || suffix.group().contains("几") || suffix.group().contains("=");
+      expr = expr.substring(0, suffix.start());
+    }
+    expr = expr.replace("乘以", "*").replace("除以", "/").replace("加", "+").replace("减", "-")
+        .replace("乘", "*").replace("×", "*").replace("x", "*").replace("÷", "/").trim();
+    if (expr.isEmpty() || !EXPRESSION.matcher(expr).matches()) {
+      return null;
+    }
+    Matcher operator = OPERATOR.matcher(expr);
+    boolean onlyMinus = true;
+    boolean hasOperator = false;
+    while (operator.find()) {
+      hasOperator = true;
+      onlyMinus &= operator.group(1).equals("-");
+    }
+    // 没有提示语时，只含减号的数字串多半是日期或编号，不当作算式
+    if (!hasOperator || (!cued && onlyMinus) || DATE_LIKE.matcher(expr).matches()) {
+      return null;
+    }
+    double result;
+    try {
+      result = toolService.calc(expr);
+    } catch (ToolException error) {
+      return null;
+    }
+    return expr + " = " + LocalIntent.formatNumber(result, 12);
+  }
+}
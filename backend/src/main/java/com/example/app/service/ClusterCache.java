@@ -0,0 +1,209 @@
+package com.example.app.service;
+
+import com.example.app.model.ClusterCacheEntry;
+import com.fasterxml.jackson.databind.JsonNode;
+import jakarta.annotation.PostConstruct;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+/**
+ * 集群共享缓存层：每个键只存放在哈希环上的归属节点，其他节点通过内部接口读写
+ *
+ * <p>本地存储为带过期时间的LRU。哈希环变化后，归属改变的条目推送给新的归属节点并从本地删除。
+ * 集群关闭时读取总是未命中、写入直接忽略，由调用方的进程内缓存兜底。
+ */
+@Service
+public class ClusterCache {
+  private static final Logger log = LoggerFactory.getLogger(ClusterCache.class);
+  private static final String CACHE_PATH = "/internal/cache";
+
+  private final ClusterService clusterService;
+  private final LongAdder localHits = new LongAdder();
+  private final LongAdder remoteHits = new LongAdder();
+  private final LongAdder misses = new LongAdder();
+  private final LongAdder handedOff = new LongAdder(); // 环变化后迁移到其他节点的条目数
+
+  @Value("${cluster.cache-max-entries:10000}")
+  private int maxEntries; // 本节点最多存放的条目数
+
+  @Value("${cluster.cache-ttl-minutes:30}")
+  private long defaultTtlMinutes; // 未指定有效期时的默认值
+
+  private LinkedHashMap<String, CachedValue> store;
+
+  /**
+   * 构造函数
+   *
+   * @param clusterService 集群成员与路由服务
+   */
+  public ClusterCache(ClusterService clusterService) {
+    this.clusterService = clusterService;
+  }
+
+  @PostConstruct
+  public void init() {
+    store = new LinkedHashMap<>(256, 0.75f, true) {
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<String, CachedValue> eldest) {
+        return size() > maxEntries;
+      }
+    };
+    clusterService.onRebalance(this::handOff);
+  }
+
+  /**
+   * 读取缓存，键归属其他节点时远程读取
+   *
+   * @param key 缓存键
+   * @return 缓存值，未命中时返回null
+   */
+  public String get(String key) {
+    if (!clusterService.isEnabled()) {
+      return null;
+    }
+    String owner = clusterService.remoteOwner(key);
+    String value;
+    if (owner == null) {
+      value = getLocal(key);
+      if (value != null) {
+        localHits.increment();
+      }
+    } else {
+      JsonNode data = clusterService.get(owner, CACHE_PATH + "?key=" + URLEncoder.encode(key, StandardCharsets.UTF_8));
+      value = data == null || data.isNull() ? null : data.asText();
+      if (value != null) {
+        remoteHits.increment();
+      }
+    }
+    if (value == null) {
+      misses.increment();
+    }
+    return value;
+  }
+
+  /**
+   * 写入缓存，使用默认有效期
+   *
+   * @param key   缓存键
+   * @param value 缓存值
+   */
+  public void put(String key, String value) {
+    put(key, value, TimeUnit.MINUTES.toMillis(defaultTtlMinutes));
+  }
+
+  /**
+   * 写入缓存，键归属其他节点时异步远程写入
+   *
+   * @param key       缓存键
+   * @param value     缓存值
+   * @param ttlMillis 有效期毫秒数
+   */
+  public void put(String key, String value, long ttlMillis) {
+    if (!clusterService.isEnabled() || value == null) {
+      return;
+    }
+    String owner = clusterService.remoteOwner(key);
+    if (owner == null) {
+      putLocal(key, value, ttlMillis);
+    } else {
+      clusterService.putAsync(owner, CACHE_PATH, new ClusterCacheEntry(key, value, ttlMillis));
+    }
+  }
+
+  /**
+   * 读取本节点存放的条目，供内部接口使用
+   *
+   * @param key 缓存键
+   * @return 缓存值，不存在或已过期时返回null
+   */
+  public synchronized String getLocal(String key) {
+    CachedValue cached = store.get(key);
+    if (cached == null) {
+      return null;
+    }
+    if (cached.expiresAt <= System.currentTimeMillis()) {
+      store.remove(key);
+      return null;
+    }
+    return cached.value;
+  }
+
+  /**
+   * 写入本节点，供内部接口使用
+   *
+   * @param key       缓存键
+   * @param value     缓存值
+   * @param ttlMillis 有效期毫秒数
+   */
+  public synchronized void putLocal(String key, String value, long ttlMillis) {
+    store.put(key, new CachedValue(value, System.currentTimeMillis() + ttlMillis));
+  }
+
+  /**
+   * 缓存统计
+   *
+   * @return 命中、未命中与迁移数量
+   */
+  public Map<String, Object> stats() {
+    Map<String, Object> stats = new LinkedHashMap<>();
+    synchronized (this) {
+      stats.put("localEntries", store.size());
+    }
+    stats.put("localHits", localHits.sum());
+    stats.put("remoteHits", remoteHits.sum());
+    stats.put("misses", misses.sum());
+    stats.put("handedOff", handedOff.sum());
+    return stats;
+  }
+
+  /**
+   * 哈希环变化后，把归属其他节点的未过期条目推送过去并从本地删除
+   */
+  private void handOff(HashRing ring) {
+    String self = clusterService.self();
+    long now = System.currentTimeMillis();
+    List<ClusterCacheEntry> moved = new ArrayList<>();
+    synchronized (this) {
+      store.entrySet().removeIf(entry -> {
+        if (entry.getValue().expiresAt <= now) {
+          return true;
+        }
+        if (self.equals(ring.owner(entry.getKey()))) {
+          return false;
+        }
+        moved.add(new ClusterCacheEntry(entry.getKey(), entry.getValue().value, entry.getValue().expiresAt - now));
+        return true;
+      });
+    }
+    for (ClusterCacheEntry entry : moved) {
+      clusterService.putAsync(ring.owner(entry.getKey()), CACHE_PATH, entry);
+    }
+    handedOff.add(moved.size());
+    if (!moved.isEmpty()) {
+      log.info("Handed off {} cache entries after ring change", moved.size());
+    }
+  }
+
+  /**
+   * 带过期时间的缓存值
+   */
+  private static class CachedValue {
+    private final String value;
+    private final long expiresAt;
+
+    CachedValue(String value, long expiresAt) {
+      this.value = value;
+      this.expiresAt = expiresAt;
+    }
+  }
+}
@@ -0,0 +1,419 @@
+package com.example.app.service;
+
+import com.example.app.model.AskRequest;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+import okhttp3.Call;
+import okhttp3.Callback;
+import okhttp3.Dispatcher;
+import okhttp3.MediaType;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.RequestBody;
+import okhttp3.Response;
+import okio.BufferedSource;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+/**
+ * 集群成员与路由：从静态配置读取节点列表，用一致性哈希环决定会话和缓存键的归属节点
+ *
+ * <p>节点之间通过 /internal 接口做轻量RPC。定时探测其他节点，连续失败达到阈值即移出哈希环，
+ * 恢复后重新加入，环变化时通知监听者迁移归属改变的数据。默认关闭，关闭时所有键都归属本节点。
+ */
+@Service
+public class ClusterService {
+  private static final Logger log = LoggerFactory.getLogger(ClusterService.class);
+  private static final MediaType JSON = MediaType.parse("application/json; charset=utf-8");
+  public static final String FORWARDED_HEADER = "X-Cluster-Forwarded"; // 转发来源节点，防止循环转发
+  public static final String SECRET_HEADER = "X-Cluster-Secret"; // 节点间共享密钥
+  public static final String CLIENT_HEADER = "X-Cluster-Client"; // 转发前的客户端地址，用于计量
+
+  private final OkHttpClient okHttpClient;
+  private final ObjectMapper objectMapper;
+  private final Map<String, Integer> failures = new ConcurrentHashMap<>();
+  private final Set<String> down = ConcurrentHashMap.newKeySet();
+  private final List<Consumer<HashRing>> listeners = new CopyOnWriteArrayList<>();
+  private final LongAdder forwarded = new LongAdder();
+  private final LongAdder forwardFailures = new LongAdder();
+  private final LongAdder rebalances = new LongAdder();
+
+  @Value("${cluster.enabled:false}")
+  private boolean enabled; // 是否启用集群模式
+
+  @Value("${cluster.self:http://127.0.0.1:8081}")
+  private String self; // 本节点对其他节点可见的地址
+
+  @Value("${cluster.nodes:}")
+  private String nodes; // 全部节点地址，逗号分隔，可包含本节点
+
+  @Value("${cluster.virtual-nodes:160}")
+  private int virtualNodes; // 每个节点在哈希环上的虚拟节点数
+
+  @Value("${cluster.secret:}")
+  private String secret; // 节点间共享密钥，启用集群时必须配置
+
+  @Value("${cluster.rpc-timeout-ms:1500}")
+  private long rpcTimeoutMs; // 节点间RPC超时
+
+  @Value("${cluster.failure-threshold:2}")
+  private int failureThreshold; // 连续失败多少次后移出哈希环
+
+  @Value("${cluster.relay-max-streams:256}")
+  private int relayMaxStreams; // 同时转发的问答流上限，对每个节点同样适用
+
+  private OkHttpClient rpcClient;
+  private OkHttpClient relayClient;
+  private List<String> members = List.of();
+  private volatile HashRing ring;
+
+  /**
+   * 构造函数
+   *
+   * @param okHttpClient OkHttp客户端实例，节点间RPC与转发问答流在它的基础上派生
+   * @param objectMapper Jackson对象映射器
+   */
+  public ClusterService(OkHttpClient okHttpClient, ObjectMapper objectMapper) {
+    this.okHttpClient = okHttpClient;
+    this.objectMapper = objectMapper;
+  }
+
+  @PostConstruct
+  public void init() {
+    self = trimSlash(self);
+    if (!enabled) {
+      return;
+    }
+    if (secret == null || secret.isBlank()) {
+      throw new IllegalStateException("启用集群时必须配置cluster.secret");
+    }
+    Set<String> configured = new LinkedHashSet<>();
+    configured.add(self);
+    for (String node : nodes.split(",")) {
+      if (!node.isBlank()) {
+        configured.add(trimSlash(node.trim()));
+      }
+    }
+    members = List.copyOf(configured);
+    rpcClient = okHttpClient.newBuilder()
+        .connectTimeout(rpcTimeoutMs, TimeUnit.MILLISECONDS)
+        .callTimeout(rpcTimeoutMs, TimeUnit.MILLISECONDS)
+        .build();
+    // 转发的问答流会持续整个回答，使用独立的Dispatcher，不占用RPC与模型调用共享的每节点5个请求的名额
+    Dispatcher relayDispatcher = new Dispatcher();
+    relayDispatcher.setMaxRequests(relayMaxStreams);
+    relayDispatcher.setMaxRequestsPerHost(relayMaxStreams);
+    relayClient = okHttpClient.newBuilder()
+        .dispatcher(relayDispatcher)
+        .connectTimeout(rpcTimeoutMs, TimeUnit.MILLISECONDS)
+        .build();
+    ring = new HashRing(members, virtualNodes);
+    log.info("Cluster enabled, self {}, members {}", self, members);
+  }
+
+  @PreDestroy
+  public void shutdown() {
+    if (relayClient != null) {
+      relayClient.dispatcher().executorService().shutdownNow();
+    }
+  }
+
+  public boolean isEnabled() {
+    return enabled;
+  }
+
+  public String self() {
+    return self;
+  }
+
+  /**
+   * 查找键的归属节点
+   *
+   * @param key 会话ID或缓存键
+   * @return 节点地址，集群关闭或键为空时返回本节点
+   */
+  public String ownerOf(String key) {
+    if (!enabled || key == null || key.isEmpty()) {
+      return self;
+    }
+    String owner = ring.owner(key);
+    return owner != null ? owner : self;
+  }
+
+  /**
+   * 查找键的归属节点，归属本节点时返回null
+   *
+   * @param key 会话ID或缓存键
+   * @return 其他节点的地址或null
+   */
+  public String remoteOwner(String key) {
+    String owner = ownerOf(key);
+    return self.equals(owner) ? null : owner;
+  }
+
+  /**
+   * 校验节点间请求携带的密钥
+   *
+   * @param provided 请求头中的密钥
+   * @return 是否允许访问内部接口
+   */
+  public boolean authorized(String provided) {
+    if (!enabled || provided == null) {
+      return false;
+    }
+    // 按常量时间比较，避免通过响应耗时逐字节猜测密钥
+    return MessageDigest.isEqual(secret.getBytes(StandardCharsets.UTF_8), provided.getBytes(StandardCharsets.UTF_8));
+  }
+
+  /**
+   * 注册哈希环变化的监听者，在探测线程中回调
+   *
+   * @param listener 监听者，参数为新的哈希环
+   */
+  public void onRebalance(Consumer<HashRing> listener) {
+    listeners.add(listener);
+  }
+
+  /**
+   * 定时探测其他节点
+   */
+  @Scheduled(fixedDelayString = "${cluster.health-interval-ms:2000}")
+  public void checkPeers() {
+    if (!enabled) {
+      return;
+    }
+    for (String node : members) {
+      if (self.equals(node)) {
+        continue;
+      }
+      try (Response response = rpcClient.newCall(request(node, "/internal/cluster/ping").get().build()).execute()) {
+        // 内部接口拒绝时HTTP状态仍为200，需按业务码判断
+        boolean alive = response.isSuccessful() && response.body() != null
+            && objectMapper.readTree(response.body().string()).path("code").asInt(-1) == 0;
+        if (alive) {
+          markUp(node);
+        } else {
+          markFailure(node);
+        }
+      } catch (IOException error) {
+        markFailure(node);
+      }
+    }
+  }
+
+  /**
+   * 同步调用其他节点的内部接口
+   *
+   * @param node 节点地址
+   * @param path 接口路径及查询参数
+   * @return 响应中的data字段，失败时返回null
+   */
+  public JsonNode get(String node, String path) {
+    try (Response response = rpcClient.newCall(request(node, path).get().build()).execute()) {
+      if (!response.isSuccessful() || response.body() == null) {
+        markFailure(node);
+        return null;
+      }
+      JsonNode result = objectMapper.readTree(response.body().string());
+      return result.path("code").asInt(-1) == 0 ? result.path("data") : null;
+    } catch (IOException error) {
+      log.warn("Cluster RPC to {} failed: {}", node, error.getMessage());
+      markFailure(node);
+      return null;
+    }
+  }
+
+  /**
+   * 异步向其他节点的内部接口提交数据，不等待结果
+   *
+   * @param node 节点地址
+   * @param path 接口路径
+   * @param body 请求体
+   */
+  public void putAsync(String node, String path, Object body) {
+    RequestBody requestBody;
+    try {
+      requestBody = RequestBody.create(objectMapper.writeValueAsString(body), JSON);
+    } catch (IOException error) {
+      log.error("Cluster RPC body serialization failed", error);
+      return;
+    }
+    rpcClient.newCall(request(node, path).put(requestBody).build()).enqueue(new Callback() {
+      @Override
+      public void onFailure(Call call, IOException error) {
+        log.warn("Cluster RPC to {} failed: {}", node, error.getMessage());
+        markFailure(node);
+      }
+
+      @Override
+      public void onResponse(Call call, Response response) {
+        response.close();
+      }
+    });
+  }
+
+  /**
+   * 把问答请求转发到会话的归属节点，并将其SSE数据逐条转发给客户端
+   *
+   * <p>归属节点不可达或在返回任何数据前失败时，执行fallback在本节点处理。
+   *
+   * @param owner     归属节点地址
+   * @param request   问答请求
+   * @param clientKey 客户端API Key，可为空
+   * @param clientAddress 客户端地址，归属节点按它计量没有API Key的请求
+   * @param emitter   客户端的SSE发射器
+   * @param fallback  转发失败时的本地处理
+   */
+  public void forwardAsk(String owner, AskRequest request, String clientKey, String clientAddress,
+      SseEmitter emitter, Runnable fallback) {
+    Request.Builder builder;
+    try {
+      builder = new Request.Builder()
+          .url(owner + "/api/ask")
+          .header(FORWARDED_HEADER, self)
+          .header(SECRET_HEADER, secret)
+          .header(CLIENT_HEADER, clientAddress)
+          .header("Accept", "text/event-stream")
+          .post(RequestBody.create(objectMapper.writeValueAsString(request), JSON));
+    } catch (IOException error) {
+      fallback.run();
+      return;
+    }
+    if (clientKey != null) {
+      builder.header("X-API-Key", clientKey);
+    }
+    forwarded.increment();
+    Call call = relayClient.newCall(builder.build());
+    emitter.onCompletion(call::cancel);
+    emitter.onTimeout(call::cancel);
+    emitter.onError(error -> call.cancel());
+    call.enqueue(new Callback() {
+      @Override
+      public void onFailure(Call call, IOException error) {
+        if (call.isCanceled()) {
+          return;
+        }
+        log.warn("Forward ask to {} failed: {}", owner, error.getMessage());
+        forwardFailures.increment();
+        markFailure(owner);
+        fallback.run();
+      }
+
+      @Override
+      public void onResponse(Call call, Response response) {
+        boolean relayed = false;
+        try (response) {
+          if (!response.isSuccessful() || response.body() == null) {
+            log.warn("Forward ask to {} rejected: {}", owner, response.code());
+            forwardFailures.increment();
+            fallback.run();
+            return;
+          }
+          BufferedSource source = response.body().source();
+          String line;
+          while ((line = source.readUtf8Line()) != null) {
+            if (line.startsWith("data:")) {
+              emitter.send(SseEmitter.event().data(line.substring(5).trim()));
+              relayed = true;
+            }
+          }
+          emitter.complete();
+        } catch (IOException error) {
+          if (call.isCanceled()) {
+            return;
+          }
+          forwardFailures.increment();
+          if (relayed) {
+            emitter.completeWithError(error);
+          } else {
+            markFailure(owner);
+            fallback.run();
+          }
+        }
+      }
+    });
+  }
+
+  /**
+   * 集群状态快照
+   *
+   * @return 成员、存活节点与转发统计
+   */
+  public Map<String, Object> stats() {
+    Map<String, Object> stats = new LinkedHashMap<>();
+    stats.put("enabled", enabled);
+    stats.put("self", self);
+    stats.put("members", members);
+    stats.put("live", ring == null ? List.of(self) : ring.nodes());
+    stats.put("forwarded", forwarded.sum());
+    stats.put("forwardFailures", forwardFailures.sum());
+    stats.put("rebalances", rebalances.sum());
+    return stats;
+  }
+
+  private Request.Builder request(String node, String path) {
+    return new Request.Builder().url(node + path).header(SECRET_HEADER, secret);
+  }
+
+  private void markUp(String node) {
+    failures.remove(node);
+    if (down.remove(node)) {
+      log.info("Cluster node {} is back", node);
+      rebuildRing();
+    }
+  }
+
+  private void markFailure(String node) {
+    if (failures.merge(node, 1, Integer::sum) >= failureThreshold && down.add(node)) {
+      log.warn("Cluster node {} marked down", node);
+      rebuildRing();
+    }
+  }
+
+  /**
+   * 按存活节点重建哈希环，并通知监听者迁移数据
+   */
+  private synchronized void rebuildRing() {
+    List<String> live = new ArrayList<>();
+    for (String node : members) {
+      if (!down.contains(node)) {
+        live.add(node);
+      }
+    }
+    HashRing updated = new HashRing(live, virtualNodes);
+    ring = updated;
+    rebalances.increment();
+    log.info("Cluster ring rebuilt, live nodes {}", live);
+    for (Consumer<HashRing> listener : listeners) {
+      try {
+        listener.accept(updated);
+      } catch (RuntimeException error) {
+        log.error("Cluster rebalance listener failed", error);
+      }
+    }
+  }
+
+  private static String trimSlash(String url) {
+    return url.endsWith("/") ? url.substring(0, url.length() - 1) : url;
+  }
+}
@@ -0,0 +1,197 @@
+package com.example.app.service;
+
+import jakarta.annotation.PostConstruct;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+/**
+ * 自适应并发限制：按首字延迟动态调整同时处理的问答数量，超出时快速拒绝
+ *
+ * <p>采用梯度算法：长期平均首字延迟作为无排队时的基准，短期平均高于基准乘以容忍系数时按比例收缩上限；
+ * 延迟平稳时缓慢放宽，大约每收到上限个样本放宽平方根个名额；上游调用失败时乘性减小。
+ * 实际并发不到上限一半时不放宽，避免空闲期把上限推高后在突发流量下失去保护。
+ */
+@Service
+public class ConcurrencyLimiter {
+  private static final Logger log = LoggerFactory.getLogger(ConcurrencyLimiter.class);
+  private static final int SAMPLE_CAPACITY = 512; // 用于计算分位数的最近样本数
+
+  private final AtomicInteger inFlight = new AtomicInteger();
+  private final LongAdder accepted = new LongAdder();
+  private final LongAdder shed = new LongAdder();
+  private final LongAdder drops = new LongAdder();
+  private final long[] samples = new long[SAMPLE_CAPACITY];
+  private int sampleCount;
+  private volatile double limit;
+  private double shortTtft; // 短期平均首字延迟，纳秒
+  private double longTtft; // 长期平均首字延迟，纳秒
+
+  @Value("${concurrency.enabled:true}")
+  private boolean enabled; // 是否启用自适应并发限制
+
+  @Value("${concurrency.initial-limit:20}")
+  private int initialLimit; // 初始并发上限
+
+  @Value("${concurrency.min-limit:2}")
+  private int minLimit; // 并发上限的下界
+
+  @Value("${concurrency.max-limit:200}")
+  private int maxLimit; // 并发上限的上界
+
+  @Value("${concurrency.tolerance:1.5}")
+  private double tolerance; // 短期延迟超过长期基准多少倍才开始收缩
+
+  @Value("${concurrency.smoothing:0.2}")
+  private double smoothing; // 收缩时每次向新上限靠拢的比例
+
+  @Value("${concurrency.backoff-ratio:0.9}")
+  private double backoffRatio; // 上游失败时上限的乘数
+
+  @Value("${concurrency.short-window:5}")
+  private int shortWindow; // 短期平均的样本窗口
+
+  @Value("${concurrency.long-window:100}")
+  private int longWindow; // 长期平均的样本窗口
+
+  @PostConstruct
+  public void init() {
+    limit = initialLimit;
+  }
+
+  /**
+   * 尝试占用一个并发名额
+   *
+   * @return 是否占用成功，失败时调用方应拒绝请求
+   */
+  public boolean tryAcquire() {
+    if (!enabled) {
+      inFlight.incrementAndGet();
+      accepted.increment();
+      return true;
+    }
+    while (true) {
+      int current = inFlight.get();
+      if (current >= (int) limit) {
+        shed.increment();
+        return false;
+      }
+      if (inFlight.compareAndSet(current, current + 1)) {
+        accepted.increment();
+        return true;
+      }
+    }
+  }
+
+  /**
+   * 归还名额，每次成功的 {@link #tryAcquire()} 对应一次调用
+   */
+  public void release() {
+    inFlight.decrementAndGet();
+  }
+
+  /**
+   * 记录一次首字延迟并调整并发上限
+   *
+   * @param ttftNanos 首字延迟纳秒数
+   */
+  public synchronized void onSample(long ttftNanos) {
+    samples[sampleCount++ % SAMPLE_CAPACITY] = ttftNanos;
+    if (longTtft == 0) {
+      shortTtft = ttftNanos;
+      longTtft = ttftNanos;
+      return;
+    }
+    shortTtft += (ttftNanos - shortTtft) / shortWindow;
+    longTtft += (ttftNanos - longTtft) / longWindow;
+    // 延迟长期下降后基准会偏高，向短期值回落，否则收缩会迟钝
+    if (longTtft > shortTtft * 2) {
+      longTtft *= 0.95;
+    }
+    double gradient = Math.max(0.5, Math.min(1.0, tolerance * longTtft / shortTtft));
+    if (gradient < 1.0) {
+      updateLimit(limit * (1 - smoothing) + limit * gradient * smoothing);
+    } else if (inFlight.get() >= limit / 2) {
+      // 放宽太快时长期基准会跟着排队延迟一起上涨，梯度就失去了作用
+      updateLimit(limit + Math.sqrt(limit) / limit);
+    }
+  }
+
+  /**
+   * 上游调用失败或超时，乘性减小并发上限
+   */
+  public synchronized void onDrop() {
+    drops.increment();
+    updateLimit(limit * backoffRatio);
+  }
+
+  /**
+   * 建议客户端的重试间隔：约为当前一次问答的首字延迟
+   *
+   * @return 秒数，1到30之间
+   */
+  public synchronized long retryAfterSeconds() {
+    long seconds = (long) Math.ceil(shortTtft / TimeUnit.SECONDS.toNanos(1));
+    return Math.max(1, Math.min(30, seconds));
+  }
+
+  /**
+   * 当前是否还有空闲名额，用于就绪检查
+   *
+   * @return 是否可以接收新的问答
+   */
+  public boolean hasHeadroom() {
+    return !enabled || inFlight.get() < (int) limit;
+  }
+
+  /**
+   * 并发限制统计
+   *
+   * @return 上限、进行中数量、空闲名额、拒绝次数与首字延迟分位数
+   */
+  public Map<String, Object> stats() {
+    Map<String, Object> stats = new LinkedHashMap<>();
+    int current = inFlight.get();
+    stats.put("enabled", enabled);
+    stats.put("limit", (int) limit);
+    stats.put("inFlight", current);
+    stats.put("headroom", Math.max(0, (int) limit - current));
+    stats.put("accepted", accepted.sum());
+    stats.put("shed", shed.sum());
+    stats.put("drops", drops.sum());
+    long[] recent;
+    synchronized (this) {
+      stats.put("shortTtftMillis", Math.round(shortTtft / 1_000_000));
+      stats.put("longTtftMillis", Math.round(longTtft / 1_000_000));
+      recent = Arrays.copyOf(samples, Math.min(sampleCount, SAMPLE_CAPACITY));
+    }
+    Arrays.sort(recent);
+    stats.put("p50TtftMillis", percentileMillis(recent, 0.5));
+    stats.put("p99TtftMillis", percentileMillis(recent, 0.99));
+    return stats;
+  }
+
+  private void updateLimit(double updated) {
+    double clamped = Math.max(minLimit, Math.min(maxLimit, updated));
+    if ((int) clamped != (int) limit) {
+      log.info("Concurrency limit {} -> {} (short ttft {}ms, long ttft {}ms)", (int) limit, (int) clamped,
+          Math.round(shortTtft / 1_000_000), Math.round(longTtft / 1_000_000));
+    }
+    limit = clamped;
+  }
+
+  private static long percentileMillis(long[] sorted, double percentile) {
+    if (sorted.length == 0) {
+      return 0;
+    }
+    int index = (int) Math.ceil(percentile * sorted.length) - 1;
+    return TimeUnit.NANOSECONDS.toMillis(sorted[Math.max(0, index)]);
+  }
+}
@@ -0,0 +1,73 @@
+package com.example.app.service;
+
+import java.time.Clock;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.TextStyle;
+import java.util.Locale;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * 日期与时间：“今天几号”“明天星期几”“现在几点”“what is today's date”等问题按服务器时钟直接回答
+ */
+@Component
+public class DateTimeIntent implements LocalIntent {
+  private static final Pattern CHINESE_DATE = Pattern.compile(
+      "^(今天|今日|明天|后天|昨天|前天)(?:是|的)?(几月几[号日]|几[号日]|日期|星期几|周几|礼拜几)(?:是多少|是什么|星期几)?[呀啊呢]?[\\s?。!]*$");
+  private static final Pattern CHINESE_TIME = Pattern.compile(
+      "^(?:现在是?(?:几点了?|几点钟|什么时间|的时间|时间)|几点了)[呀啊呢]?[\\s?。!]*$");
+  private static final Pattern CHINESE_YEAR = Pattern.compile("^今年是?(?:哪一?年|几几年|多少年|公元几年)[\\s?。!]*$");
+  private static final Pattern ENGLISH_DATE = Pattern.compile(
+      "^(?:what(?:'s| is) (?:today's date|the date(?: today)?)|today's date|what day is (?:it|today)(?: today)?)[\\s?.!]*$");
+  private static final Pattern ENGLISH_TIME = Pattern.compile(
+      "^(?:what time is it(?: now)?|what's the time(?: now)?|what is the time(?: now)?)[\\s?.!]*$");
+  private static final Map<String, Integer> DAY_OFFSETS = Map.of(
+      "前天", -2, "昨天", -1, "今天", 0, "今日", 0, "明天", 1, "后天", 2);
+  private static final DateTimeFormatter CHINESE_DAY = DateTimeFormatter.ofPattern("yyyy年M月d日");
+  private static final DateTimeFormatter ENGLISH_DAY = DateTimeFormatter.ofPattern("MMMM d, yyyy", Locale.ENGLISH);
+  private static final DateTimeFormatter CLOCK_TIME = DateTimeFormatter.ofPattern("HH:mm");
+
+  @Value("${local-intent.zone-id:Asia/Shanghai}")
+  private String zoneId; // 回答日期时间所用的时区
+
+  @Override
+  public String name() {
+    return "date-time";
+  }
+
+  @Override
+  public String answer(String question) {
+    ZonedDateTime now = ZonedDateTime.now(Clock.system(ZoneId.of(zoneId)));
+    Matcher date = CHINESE_DATE.matcher(question);
+    if (date.matches()) {
+      String day = date.group(1);
+      LocalDate target = now.toLocalDate().plusDays(DAY_OFFSETS.get(day));
+      return day + "是" + target.format(CHINESE_DAY) + "，" + weekday(target, Locale.CHINA) + "。";
+    }
+    if (CHINESE_TIME.matcher(question).matches()) {
+      return "现在是" + now.format(CHINESE_DAY) + " " + weekday(now.toLocalDate(), Locale.CHINA) + " "
+          + now.format(CLOCK_TIME) + "（" + zoneId + "）。";
+    }
+    if (CHINESE_YEAR.matcher(question).matches()) {
+      return "今年是" + now.getYear() + "年。";
+    }
+    if (ENGLISH_DATE.matcher(question).matches()) {
+      return "Today is " + weekday(now.toLocalDate(), Locale.ENGLISH) + ", " + now.format(ENGLISH_DAY) + ".";
+    }
+    if (ENGLISH_TIME.matcher(question).matches()) {
+      return "It is " + now.format(CLOCK_TIME) + " (" + zoneId + ") on "
+          + weekday(now.toLocalDate(), Locale.ENGLISH) + ", " + now.format(ENGLISH_DAY) + ".";
+    }
+    return null;
+  }
+
+  private static String weekday(LocalDate date, Locale locale) {
+    return date.getDayOfWeek().getDisplayName(TextStyle.FULL, locale);
+  }
+}
@@ -0,0 +1,95 @@
+package com.example.app.service;
+
+import java.text.Normalizer;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * 文本的事实签名：数字、拉丁字母词、中文数字、相对时间词、书名号和引号中的专名，以及其余的汉字
+ *
+ * <p>字符n-gram向量对这些片段几乎不敏感，“iPhone 15”与“iPhone 16”、“杭州今天天气”与“苏州今天天气”的相似度都很高，
+ * 向量相似之外还要求两段文本的签名相同才能视为同一含义。签名与片段顺序无关；汉字在去掉疑问词、助词等虚词后
+ * 逐字计入，两段文本只要有一个实义汉字不同签名就不同，而“北京今天天气怎么样”与“今天北京天气如何”的签名相同。
+ * 汉字不按二元组计入：调换词序会改变词与词交界处的二元组，同义改写就无法命中。常见英文虚词不计入。
+ */
+public final class FactSignature {
+  private static final Pattern FACT = Pattern.compile(
+      "《([^》]+)》|“([^”]+)”|「([^」]+)」|\"([^\"]+)\"" // 专名
+          + "|(\\d+(?:\\.\\d+)?)" // 阿拉伯数字
+          + "|([a-z]+)" // 拉丁字母词
+          // 中文数字只在“第”之后或量词之前计入，避免“一下”“统一”之类的词
+          + "|第([零〇一二三四五六七八九十百千万两]+)"
+          + "|([零〇一二三四五六七八九十百千万两]+)(?=[年月日号个位名次届岁元块条天周度倍亿万])"
+          + "|(今天|今日|明天|明日|昨天|昨日|后天|前天|今晚|明晚|昨晚|今年|明年|去年|前年|本周|这周|下周|上周"
+          + "|本月|这个月|下个月|上个月|现在|目前|最近)"); // 相对时间
+  private static final Map<String, String> TIME_SYNONYMS = Map.of("今日", "今天", "明日", "明天", "昨日", "昨天",
+      "这周", "本周", "这个月", "本月", "目前", "现在");
+  // 不影响含义的疑问词、助词和客套话，去掉后再计入汉字
+  private static final Pattern FILLER = Pattern.compile(
+      "怎么样|怎么|怎样|如何|什么|哪里|哪儿|哪个|多少|是不是|有没有|请问|请|麻烦|一下|帮我|告诉我|介绍"
+          + "|的|了|吗|呢|吧|啊|呀|嘛|是|有|在|和|与|及|我|你|都|也|还");
+  private static final Pattern HAN = Pattern.compile("\\p{IsHan}");
+  private static final Set<String> STOP_WORDS = Set.of(
+      "a", "an", "the", "is", "are", "was", "were", "be", "do", "does", "did", "what", "whats", "which", "who",
+      "how", "when", "where", "why", "in", "on", "at", "of", "for", "to", "from", "by", "with", "and", "or",
+      "me", "i", "you", "it", "its", "s", "please", "tell", "about", "can", "could", "would", "there");
+
+  private FactSignature() {
+  }
+
+  /**
+   * 计算文本的事实签名
+   *
+   * @param text 文本
+   * @return 排序去重后以空格连接的事实片段，没有事实片段时为空串
+   */
+  public static String of(String text) {
+    if (text == null || text.isEmpty()) {
+      return "";
+    }
+    String normalized = Normalizer.normalize(text, Normalizer.Form.NFKC).toLowerCase(Locale.ROOT);
+    Set<String> facts = new TreeSet<>();
+    StringBuilder rest = new StringBuilder(); // 去掉已提取片段后的文本，其中的汉字逐字计入
+    Matcher matcher = FACT.matcher(normalized);
+    int last = 0;
+    while (matcher.find()) {
+      rest.append(normalized, last, matcher.start()).append(' ');
+      last = matcher.end();
+      for (int group = 1; group <= matcher.groupCount(); group++) {
+        String fact = matcher.group(group);
+        if (fact == null) {
+          continue;
+        }
+        if (group == 5) {
+          fact = stripLeadingZeros(fact);
+        } else if (group == 6 && STOP_WORDS.contains(fact)) {
+          break;
+        } else if (group == 9) {
+          fact = TIME_SYNONYMS.getOrDefault(fact, fact);
+        } else if (group <= 4) {
+          fact = fact.strip();
+        }
+        facts.add(fact);
+        break;
+      }
+    }
+    rest.append(normalized, last, normalized.length());
+    Matcher han = HAN.matcher(FILLER.matcher(rest).replaceAll(" "));
+    while (han.find()) {
+      facts.add(han.group());
+    }
+    return String.join(" ", facts);
+  }
+
+  private static String stripLeadingZeros(String number) {
+    int start = 0;
+    while (start < number.length() - 1 && number.charAt(start) == '0' && number.charAt(start + 1) != '.') {
+      start++;
+    }
+    return number.substring(start);
+  }
+}
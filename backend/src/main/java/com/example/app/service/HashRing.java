@@ -0,0 +1,68 @@
+package com.example.app.service;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * 带虚拟节点的一致性哈希环，构建后不可变，成员变化时整体重建
+ *
+ * <p>每个节点在环上放置若干虚拟节点，键顺时针找到的第一个虚拟节点即其归属。
+ * 节点增减时只有相邻区间的键改变归属。
+ */
+public class HashRing {
+  private final TreeMap<Long, String> ring = new TreeMap<>();
+  private final List<String> nodes;
+
+  /**
+   * 构造函数
+   *
+   * @param nodes        节点标识集合
+   * @param virtualNodes 每个节点的虚拟节点数
+   */
+  public HashRing(Collection<String> nodes, int virtualNodes) {
+    this.nodes = List.copyOf(nodes);
+    for (String node : this.nodes) {
+      for (int i = 0; i < virtualNodes; i++) {
+        ring.put(hash(node + "#" + i), node);
+      }
+    }
+  }
+
+  public List<String> nodes() {
+    return nodes;
+  }
+
+  /**
+   * 查找键的归属节点
+   *
+   * @param key 键
+   * @return 节点标识，环为空时返回null
+   */
+  public String owner(String key) {
+    if (ring.isEmpty()) {
+      return null;
+    }
+    Map.Entry<Long, String> entry = ring.ceilingEntry(hash(key));
+    return entry != null ? entry.getValue() : ring.firstEntry().getValue();
+  }
+
+  /**
+   * FNV-1a 64位哈希再做一次雪崩混合，使相近的字符串在环上分散
+   */
+  static long hash(String key) {
+    long h = 0xcbf29ce484222325L;
+    for (byte b : key.getBytes(StandardCharsets.UTF_8)) {
+      h ^= b & 0xff;
+      h *= 0x100000001b3L;
+    }
+    h ^= h >>> 33;
+    h *= 0xff51afd7ed558ccdL;
+    h ^= h >>> 33;
+    h *= 0xc4ceb9fe1a85ec53L;
+    h ^= h >>> 33;
+    return h;
+  }
+}
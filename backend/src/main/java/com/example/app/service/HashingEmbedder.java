@@ -0,0 +1,81 @@
+package com.example.app.service;
+
+import java.util.Locale;
+import java.util.regex.Pattern;
+
+/**
+ * 基于字符n-gram哈希的本地文本向量化，无需模型或外部依赖
+ *
+ * <p>文本去掉标点、空白和常见语气词后，取单字与相邻双字，按哈希映射到固定维度并带符号累加，
+ * 最后做L2归一化，向量点积即余弦相似度。字序不同但用字相同的问法相似度较高。
+ */
+public class HashingEmbedder {
+  private static final Pattern NOISE = Pattern.compile("[\\p{P}\\p{S}\\s]+");
+  private static final Pattern FILLER = Pattern.compile("请问|怎么样|如何|是什么|什么|多少|吗|呢|吧|啊|呀|了|的");
+
+  private final int dimensions;
+
+  /**
+   * 构造函数
+   *
+   * @param dimensions 向量维度
+   */
+  public HashingEmbedder(int dimensions) {
+    this.dimensions = dimensions;
+  }
+
+  public int getDimensions() {
+    return dimensions;
+  }
+
+  /**
+   * 将文本转换为归一化向量
+   *
+   * @param text 文本
+   * @return 长度为dimensions的向量，文本为空时全为0
+   */
+  public float[] embed(String text) {
+    float[] vector = new float[dimensions];
+    String normalized = normalize(text);
+    for (int i = 0; i < normalized.length(); i++) {
+      add(vector, normalized.charAt(i), 0);
+      if (i + 1 < normalized.length()) {
+        add(vector, normalized.charAt(i), normalized.charAt(i + 1));
+      }
+    }
+    double norm = 0;
+    for (float value : vector) {
+      norm += value * value;
+    }
+    if (norm > 0) {
+      float scale = (float) (1 / Math.sqrt(norm));
+      for (int i = 0; i < dimensions; i++) {
+        vector[i] *= scale;
+      }
+    }
+    return vector;
+  }
+
+  private void add(float[] vector, int first, int second) {
+    int hash = mix(first * 31 + second + (second == 0 ? 0 : 0x9E3779B9));
+    int index = (hash >>> 1) % dimensions;
+    vector[index] += (hash & 1) == 0 ? 1f : -1f;
+  }
+
+  private static String normalize(String text) {
+    if (text == null) {
+      return "";
+    }
+    String lower = text.toLowerCase(Locale.ROOT);
+    return FILLER.matcher(NOISE.matcher(lower).replaceAll("")).replaceAll("");
+  }
+
+  private static int mix(int h) {
+    h ^= h >>> 16;
+    h *= 0x85EBCA6B;
+    h ^= h >>> 13;
+    h *= 0xC2B2AE35;
+    h ^= h >>> 16;
+    return h;
+  }
+}
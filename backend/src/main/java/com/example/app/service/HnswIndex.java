@@ -0,0 +1,448 @@
+package com.example.app.service;
+
+import java.util.Arrays;
+import java.util.SplittableRandom;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * 内存中的HNSW近似最近邻索引，向量与邻接表全部使用基本类型数组存储
+ *
+ * <p>要求向量已做L2归一化，距离为1-点积。文本哈希向量非常稀疏，查询时只在查询向量的非零维度上求点积，
+ * 减少访存。插入时按论文中的启发式挑选多样化的邻居。非线程安全，由调用方加锁：查询可并发，写入需独占。
+ */
+public class HnswIndex {
+  private final int dimensions;
+  private final int capacity;
+  private final int maxLinks; // 上层每个节点的最大邻居数M
+  private final int maxLinks0; // 第0层每个节点的最大邻居数2M
+  private final int efConstruction;
+  private final double levelFactor;
+  private final SplittableRandom random = new SplittableRandom(42);
+
+  private final float[] vectors; // 所有向量连续存放，第i个向量位于[i*dimensions, (i+1)*dimensions)
+  private final int[] links0; // 第0层邻接表，每个节点占maxLinks0+1个位置，首位为邻居数
+  private final int[][] upperLinks; // 上层邻接表，仅层数大于0的节点分配
+  private final int[] levels;
+  private final ConcurrentLinkedQueue<Visited> visitedPool = new ConcurrentLinkedQueue<>(); // 查询用的访问标记，按需创建后复用
+
+  private int size;
+  private int entryPoint = -1;
+  private int maxLevel = -1;
+
+  /**
+   * 构造函数
+   *
+   * @param dimensions     向量维度
+   * @param capacity       最大节点数
+   * @param maxLinks       每层邻居数M
+   * @param efConstruction 构建时的候选集大小
+   */
+  public HnswIndex(int dimensions, int capacity, int maxLinks, int efConstruction) {
+    this.dimensions = dimensions;
+    this.capacity = capacity;
+    this.maxLinks = maxLinks;
+    this.maxLinks0 = maxLinks * 2;
+    this.efConstruction = efConstruction;
+    this.levelFactor = 1 / Math.log(maxLinks);
+    this.vectors = new float[capacity * dimensions];
+    this.links0 = new int[capacity * (maxLinks0 + 1)];
+    this.upperLinks = new int[capacity][];
+    this.levels = new int[capacity];
+  }
+
+  public int size() {
+    return size;
+  }
+
+  public int capacity() {
+    return capacity;
+  }
+
+  /**
+   * 估算索引占用的堆内存字节数
+   *
+   * @return 字节数
+   */
+  public long memoryBytes() {
+    long bytes = (long) vectors.length * Float.BYTES + (long) links0.length * Integer.BYTES
+        + (long) levels.length * Integer.BYTES + (long) upperLinks.length * 8;
+    for (int i = 0; i < size; i++) {
+      if (upperLinks[i] != null) {
+        bytes += 16 + (long) upperLinks[i].length * Integer.BYTES;
+      }
+    }
+    return bytes;
+  }
+
+  /**
+   * 插入向量
+   *
+   * @param vector 归一化向量
+   * @return 节点编号，索引已满时返回-1
+   */
+  public int add(float[] vector) {
+    if (size >= capacity) {
+      return -1;
+    }
+    int id = size;
+    Query query = new Query(vector);
+    System.arraycopy(vector, 0, vectors, id * dimensions, dimensions);
+    int level = (int) (-Math.log(1 - random.nextDouble()) * levelFactor);
+    levels[id] = level;
+    if (level > 0) {
+      upperLinks[id] = new int[level * (maxLinks + 1)];
+    }
+    size++;
+
+    if (entryPoint < 0) {
+      entryPoint = id;
+      maxLevel = level;
+      return id;
+    }
+
+    int current = entryPoint;
+    for (int lc = maxLevel; lc > level; lc--) {
+      current = greedyClosest(query, current, lc);
+    }
+    for (int lc = Math.min(level, maxLevel); lc >= 0; lc--) {
+      long[] candidates = searchLayer(query, current, efConstruction, lc);
+      for (int neighbor : selectNeighbors(candidates, lc == 0 ? maxLinks0 : maxLinks)) {
+        appendLink(id, lc, neighbor);
+        connect(neighbor, lc, id);
+      }
+      current = idOf(candidates[0]);
+    }
+    if (level > maxLevel) {
+      maxLevel = level;
+      entryPoint = id;
+    }
+    return id;
+  }
+
+  /**
+   * 查询最相似的节点
+   *
+   * @param vector   归一化查询向量
+   * @param efSearch 查询时的候选集大小
+   * @return 最相似节点的编号，索引为空时返回-1
+   */
+  public int nearest(float[] vector, int efSearch) {
+    int[] ids = nearest(vector, efSearch, 1);
+    return ids.length > 0 ? ids[0] : -1;
+  }
+
+  /**
+   * 查询最相似的若干节点
+   *
+   * @param vector   归一化查询向量
+   * @param efSearch 查询时的候选集大小
+   * @param k        最多返回的节点数
+   * @return 按相似度降序排列的节点编号，索引为空时为空数组
+   */
+  public int[] nearest(float[] vector, int efSearch, int k) {
+    if (entryPoint < 0) {
+      return new int[0];
+    }
+    Query query = new Query(vector);
+    int current = entryPoint;
+    for (int lc = maxLevel; lc > 0; lc--) {
+      current = greedyClosest(query, current, lc);
+    }
+    long[] results = searchLayer(query, current, Math.max(efSearch, k), 0);
+    int[] ids = new int[Math.min(k, results.length)];
+    for (int i = 0; i < ids.length; i++) {
+      ids[i] = idOf(results[i]);
+    }
+    return ids;
+  }
+
+  /**
+   * 计算查询向量与节点的余弦相似度
+   *
+   * @param vector 归一化查询向量
+   * @param id     节点编号
+   * @return 相似度
+   */
+  public float similarity(float[] vector, int id) {
+    return dot(new Query(vector), id);
+  }
+
+  private int greedyClosest(Query query, int start, int level) {
+    int current = start;
+    float best = distance(query, current);
+    boolean changed = true;
+    while (changed) {
+      changed = false;
+      int[] links = linksOf(current, level);
+      int offset = offsetOf(current, level);
+      for (int i = 1; i <= links[offset]; i++) {
+        int neighbor = links[offset + i];
+        float d = distance(query, neighbor);
+        if (d < best) {
+          best = d;
+          current = neighbor;
+          changed = true;
+        }
+      }
+    }
+    return current;
+  }
+
+  /**
+   * 在指定层做束搜索
+   *
+   * @return 按距离升序排列的编码结果（高32位为距离，低32位为节点编号）
+   */
+  private long[] searchLayer(Query query, int start, int ef, int level) {
+    // 查询可能来自大量短命线程，访问标记放在池中复用，不随线程分配
+    Visited seen = visitedPool.poll();
+    if (seen == null) {
+      seen = new Visited(capacity);
+    }
+    try {
+      return searchLayer(query, start, ef, level, seen);
+    } finally {
+      visitedPool.offer(seen);
+    }
+  }
+
+  private long[] searchLayer(Query query, int start, int ef, int level, Visited seen) {
+    seen.reset();
+    seen.mark(start);
+    LongHeap candidates = new LongHeap(ef * 2);
+    LongHeap results = new LongHeap(ef + 1); // 存放取反后的编码，堆顶即当前最远结果
+    long first = encode(distance(query, start), start);
+    candidates.push(first);
+    results.push(-first);
+
+    while (candidates.size() > 0) {
+      long candidate = candidates.poll();
+      if (results.size() >= ef && candidate > -results.peek()) {
+        break;
+      }
+      int id = idOf(candidate);
+      int[] links = linksOf(id, level);
+      int offset = offsetOf(id, level);
+      for (int i = 1; i <= links[offset]; i++) {
+        int neighbor = links[offset + i];
+        if (!seen.mark(neighbor)) {
+          continue;
+        }
+        long encoded = encode(distance(query, neighbor), neighbor);
+        if (results.size() < ef || encoded < -results.peek()) {
+          candidates.push(encoded);
+          results.push(-encoded);
+          if (results.size() > ef) {
+            results.poll();
+          }
+        }
+      }
+    }
+
+    long[] sorted = new long[results.size()];
+    for (int i = sorted.length - 1; i >= 0; i--) {
+      sorted[i] = -results.poll();
+    }
+    return sorted;
+  }
+
+  /**
+   * 启发式挑选邻居：候选按距离升序，只保留比已选邻居更靠近新节点的候选，使连边覆盖不同方向
+   */
+  private int[] selectNeighbors(long[] candidates, int limit) {
+    int[] selected = new int[limit];
+    int count = 0;
+    for (int i = 0; i < candidates.length && count < limit; i++) {
+      int candidate = idOf(candidates[i]);
+      float distance = Float.intBitsToFloat((int) (candidates[i] >>> 32));
+      int base = candidate * dimensions;
+      boolean diverse = true;
+      for (int j = 0; j < count && diverse; j++) {
+        diverse = 1 - dotAt(base, selected[j]) >= distance;
+      }
+      if (diverse) {
+        selected[count++] = candidate;
+      }
+    }
+    return Arrays.copyOf(selected, count);
+  }
+
+  private void connect(int node, int level, int newNeighbor) {
+    int[] links = linksOf(node, level);
+    int offset = offsetOf(node, level);
+    int limit = level == 0 ? maxLinks0 : maxLinks;
+    int count = links[offset];
+    if (count < limit) {
+      links[offset + 1 + count] = newNeighbor;
+      links[offset] = count + 1;
+      return;
+    }
+    // 邻居已满：若新节点比最远的邻居更近，则替换之
+    int base = node * dimensions;
+    float newDistance = 1 - dotAt(base, newNeighbor);
+    int worstIndex = -1;
+    float worstDistance = newDistance;
+    for (int i = 1; i <= count; i++) {
+      float d = 1 - dotAt(base, links[offset + i]);
+      if (d > worstDistance) {
+        worstDistance = d;
+        worstIndex = i;
+      }
+    }
+    if (worstIndex > 0) {
+      links[offset + worstIndex] = newNeighbor;
+    }
+  }
+
+  private void appendLink(int node, int level, int neighbor) {
+    int[] links = linksOf(node, level);
+    int offset = offsetOf(node, level);
+    links[offset + 1 + links[offset]] = neighbor;
+    links[offset]++;
+  }
+
+  private int[] linksOf(int id, int level) {
+    return level == 0 ? links0 : upperLinks[id];
+  }
+
+  private int offsetOf(int id, int level) {
+    return level == 0 ? id * (maxLinks0 + 1) : (level - 1) * (maxLinks + 1);
+  }
+
+  private float distance(Query query, int id) {
+    return Math.max(0f, 1 - dot(query, id));
+  }
+
+  private float dot(Query query, int id) {
+    int base = id * dimensions;
+    float sum = 0;
+    for (int k = 0; k < query.nonZeroCount; k++) {
+      int i = query.nonZero[k];
+      sum += query.vector[i] * vectors[base + i];
+    }
+    return sum;
+  }
+
+  private float dotAt(int base, int id) {
+    int other = id * dimensions;
+    float sum = 0;
+    for (int i = 0; i < dimensions; i++) {
+      sum += vectors[base + i] * vectors[other + i];
+    }
+    return sum;
+  }
+
+  /**
+   * 非负浮点数的位模式与数值同序，可与节点编号拼成一个可直接比较的long
+   */
+  private static long encode(float distance, int id) {
+    return ((long) Float.floatToIntBits(distance) << 32) | id;
+  }
+
+  private static int idOf(long encoded) {
+    return (int) encoded;
+  }
+
+  /**
+   * 查询向量及其非零维度下标
+   */
+  private static class Query {
+    private final float[] vector;
+    private final int[] nonZero;
+    private int nonZeroCount;
+
+    Query(float[] vector) {
+      this.vector = vector;
+      this.nonZero = new int[vector.length];
+      for (int i = 0; i < vector.length; i++) {
+        if (vector[i] != 0) {
+          nonZero[nonZeroCount++] = i;
+        }
+      }
+    }
+  }
+
+  /**
+   * 基于版本号的访问标记，每次查询无需清空数组
+   */
+  private static class Visited {
+    private final int[] stamps;
+    private int version;
+
+    Visited(int capacity) {
+      this.stamps = new int[capacity];
+    }
+
+    void reset() {
+      version++;
+      if (version == 0) {
+        Arrays.fill(stamps, 0);
+        version = 1;
+      }
+    }
+
+    boolean mark(int id) {
+      if (stamps[id] == version) {
+        return false;
+      }
+      stamps[id] = version;
+      return true;
+    }
+  }
+
+  /**
+   * long类型的最小堆
+   */
+  private static class LongHeap {
+    private long[] heap;
+    private int size;
+
+    LongHeap(int initialCapacity) {
+      this.heap = new long[Math.max(4, initialCapacity)];
+    }
+
+    int size() {
+      return size;
+    }
+
+    long peek() {
+      return heap[0];
+    }
+
+    void push(long value) {
+      if (size == heap.length) {
+        heap = Arrays.copyOf(heap, size * 2);
+      }
+      int i = size++;
+      while (i > 0) {
+        int parent = (i - 1) >>> 1;
+        if (heap[parent] <= value) {
+          break;
+        }
+        heap[i] = heap[parent];
+        i = parent;
+      }
+      heap[i] = value;
+    }
+
+    long poll() {
+      long top = heap[0];
+      long last = heap[--size];
+      int i = 0;
+      int half = size >>> 1;
+      while (i < half) {
+        int child = 2 * i + 1;
+        if (child + 1 < size && heap[child + 1] < heap[child]) {
+          child++;
+        }
+        if (last <= heap[child]) {
+          break;
+        }
+        heap[i] = heap[child];
+        i = child;
+      }
+      heap[i] = last;
+      return top;
+    }
+  }
+}
@@ -0,0 +1,406 @@
+package com.example.app.service;
+
+import com.example.app.model.SearchResult;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import okhttp3.HttpUrl;
+
+/**
+ * 增量式HTML扫描器，边读边解析，内存占用与文档大小无关
+ *
+ * <p>只识别标签名、href属性和文本，不构建DOM；script/style内容直接跳过。
+ * 处理器返回false时立即停止读取，调用方关闭响应即可放弃剩余内容。
+ */
+public final class HtmlScanner {
+  private static final int MAX_TAG_LENGTH = 2048; // 单个标签最多保留的字符数
+  private static final int MAX_ENTITY_LENGTH = 10;
+  private static final int TITLE_LIMIT = 200;
+  private static final int SNIPPET_LIMIT = 300;
+  private static final Pattern HREF_PATTERN = Pattern.compile(
+      "href\\s*=\\s*(?:\"([^\"]*)\"|'([^']*)'|([^\\s>]+))", Pattern.CASE_INSENSITIVE);
+
+  private HtmlScanner() {
+  }
+
+  /**
+   * 扫描事件处理器
+   */
+  interface Handler {
+    /**
+     * 遇到标签
+     *
+     * @param name    小写标签名
+     * @param closing 是否为结束标签
+     * @param raw     标签原文（不含尖括号，可能被截断）
+     * @return 是否继续扫描
+     */
+    boolean onTag(String name, boolean closing, String raw);
+
+    /**
+     * 遇到文本字符（实体已解码）
+     *
+     * @param c 字符
+     * @return 是否继续扫描
+     */
+    boolean onText(char c);
+  }
+
+  /**
+   * 从搜索结果页中提取前若干条结果
+   *
+   * <p>以包含链接的h2/h3标题作为一条结果的开始，标题之后的文本作为摘要；
+   * 第limit条结果的摘要读满或遇到下一个标题时停止读取。
+   *
+   * @param reader   响应字符流
+   * @param limit    最多提取的结果数
+   * @param maxChars 最多读取的字符数
+   * @param base     用于解析相对链接的页面地址
+   * @return 搜索结果列表
+   * @throws IOException IO异常
+   */
+  public static List<SearchResult> extractResults(Reader reader, int limit, long maxChars, HttpUrl base)
+      throws IOException {
+    ResultCollector collector = new ResultCollector(limit, base);
+    scan(reader, collector, maxChars);
+    collector.finishCurrent();
+    return collector.results;
+  }
+
+  /**
+   * 提取网页正文文本，跳过导航、页眉页脚等区域
+   *
+   * @param reader   响应字符流
+   * @param maxChars 正文最多保留的字符数
+   * @param maxRead  最多读取的字符数
+   * @return 正文文本
+   * @throws IOException IO异常
+   */
+  public static String extractMainText(Reader reader, int maxChars, long maxRead) throws IOException {
+    TextCollector collector = new TextCollector(maxChars);
+    scan(reader, collector, maxRead);
+    return collector.text.toString().trim();
+  }
+
+  /**
+   * 扫描字符流并回调处理器
+   *
+   * @param reader   字符流
+   * @param handler  事件处理器
+   * @param maxChars 最多读取的字符数
+   * @throws IOException IO异常
+   */
+  static void scan(Reader reader, Handler handler, long maxChars) throws IOException {
+    char[] buffer = new char[8192];
+    StringBuilder tag = new StringBuilder();
+    StringBuilder entity = new StringBuilder();
+    boolean inTag = false;
+    boolean inEntity = false;
+    String rawEnd = null; // 处于script/style中时等待的结束标记
+    int rawMatched = 0;
+    int commentDashes = -1; // >=0 表示处于注释中，记录连续的'-'个数
+    long read = 0;
+    int n;
+    while (read < maxChars && (n = reader.read(buffer, 0, (int) Math.min(buffer.length, maxChars - read))) != -1) {
+      read += n;
+      for (int i = 0; i < n; i++) {
+        char c = buffer[i];
+        if (commentDashes >= 0) {
+          if (c == '>' && commentDashes >= 2) {
+            commentDashes = -1;
+          } else {
+            commentDashes = c == '-' ? commentDashes + 1 : 0;
+          }
+          continue;
+        }
+        if (rawEnd != null) {
+          if (rawMatched == rawEnd.length()) {
+            if (c == '>') {
+              rawEnd = null;
+            }
+            continue;
+          }
+          rawMatched = Character.toLowerCase(c) == rawEnd.charAt(rawMatched) ? rawMatched + 1
+              : (c == '<' ? 1 : 0);
+          continue;
+        }
+        if (inTag) {
+          if (c == '>') {
+            inTag = false;
+            String raw = tag.toString();
+            tag.setLength(0);
+            String name = tagName(raw);
+            boolean closing = raw.startsWith("/");
+            if (!closing && ("script".equals(name) || "style".equals(name)) && !raw.endsWith("/")) {
+              rawEnd = "</" + name;
+              rawMatched = 0;
+            }
+            if (!name.isEmpty() && !handler.onTag(name, closing, raw)) {
+              return;
+            }
+          } else if (tag.length() < MAX_TAG_LENGTH) {
+            tag.append(c);
+            if (tag.length() == 3 && "!--".contentEquals(tag)) {
+              inTag = false;
+              tag.setLength(0);
+              commentDashes = 0;
+            }
+          }
+          continue;
+        }
+        if (inEntity) {
+          if (c == ';' || entity.length() >= MAX_ENTITY_LENGTH || !Character.isLetterOrDigit(c) && c != '#') {
+            inEntity = false;
+            String decoded = decodeEntity(entity.toString(), c == ';');
+            entity.setLength(0);
+            for (int k = 0; k < decoded.length(); k++) {
+              if (!handler.onText(decoded.charAt(k))) {
+                return;
+              }
+            }
+            if (c == ';') {
+              continue;
+            }
+          } else {
+            entity.append(c);
+            continue;
+          }
+        }
+        if (c == '<') {
+          inTag = true;
+        } else if (c == '&') {
+          inEntity = true;
+        } else if (!handler.onText(c)) {
+          return;
+        }
+      }
+    }
+  }
+
+  private static String tagName(String raw) {
+    int start = raw.startsWith("/") ? 1 : 0;
+    int end = start;
+    while (end < raw.length() && Character.isLetterOrDigit(raw.charAt(end))) {
+      end++;
+    }
+    return raw.substring(start, end).toLowerCase(Locale.ROOT);
+  }
+
+  private static String decodeEntity(String name, boolean terminated) {
+    switch (name) {
+      case "amp":
+        return "&";
+      case "lt":
+        return "<";
+      case "gt":
+        return ">";
+      case "quot":
+        return "\"";
+      case "apos":
+        return "'";
+      case "nbsp":
+        return " ";
+      default:
+        break;
+    }
+    if (name.startsWith("#") && name.length() > 1) {
+      try {
+        int code = name.charAt(1) == 'x' || name.charAt(1) == 'X'
+            ? Integer.parseInt(name.substring(2), 16)
+            : Integer.parseInt(name.substring(1));
+        return new String(Character.toChars(code));
+      } catch (IllegalArgumentException error) {
+        // 非法实体按原文输出
+      }
+    }
+    return "&" + name + (terminated ? ";" : "");
+  }
+
+  private static String extractHref(String raw) {
+    Matcher matcher = HREF_PATTERN.matcher(raw);
+    if (!matcher.find()) {
+      return null;
+    }
+    for (int group = 1; group <= 3; group++) {
+      if (matcher.group(group) != null) {
+        return matcher.group(group).replace("&amp;", "&");
+      }
+    }
+    return null;
+  }
+
+  /**
+   * 向缓冲区追加字符，合并连续空白
+   */
+  private static void appendCollapsed(StringBuilder target, char c) {
+    if (Character.isWhitespace(c) || c == '\u00a0') {
+      if (target.length() > 0 && target.charAt(target.length() - 1) != ' '
+          && target.charAt(target.length() - 1) != '\n') {
+        target.append(' ');
+      }
+      return;
+    }
+    target.append(c);
+  }
+
+  /**
+   * 搜索结果收集器
+   */
+  private static class ResultCollector implements Handler {
+    private final int limit;
+    private final HttpUrl base;
+    private final List<SearchResult> results = new ArrayList<>();
+    private final StringBuilder title = new StringBuilder();
+    private final StringBuilder snippet = new StringBuilder();
+    private boolean inHeading;
+    private String headingHref;
+    private SearchResult current;
+
+    ResultCollector(int limit, HttpUrl base) {
+      this.limit = limit;
+      this.base = base;
+    }
+
+    @Override
+    public boolean onTag(String name, boolean closing, String raw) {
+      boolean heading = "h2".equals(name) || "h3".equals(name);
+      if (heading && !closing) {
+        if (results.size() >= limit) {
+          return false; // 最后一条结果的摘要已结束
+        }
+        inHeading = true;
+        headingHref = null;
+        title.setLength(0);
+        return true;
+      }
+      if (heading) {
+        inHeading = false;
+        String url = resolve(headingHref);
+        String text = title.toString().trim();
+        if (url != null && !text.isEmpty()) {
+          finishCurrent();
+          current = new SearchResult(text, url, "");
+          results.add(current);
+        }
+        return true;
+      }
+      if (inHeading && !closing && "a".equals(name) && headingHref == null) {
+        headingHref = extractHref(raw);
+      }
+      if (!inHeading && current != null && isBlock(name)) {
+        appendCollapsed(snippet, ' ');
+      }
+      return true;
+    }
+
+    @Override
+    public boolean onText(char c) {
+      if (inHeading) {
+        if (title.length() < TITLE_LIMIT) {
+          appendCollapsed(title, c);
+        }
+        return true;
+      }
+      if (current == null) {
+        return true;
+      }
+      if (snippet.length() < SNIPPET_LIMIT) {
+        appendCollapsed(snippet, c);
+        return true;
+      }
+      // 摘要已读满，最后一条结果完成后不再读取
+      return results.size() < limit;
+    }
+
+    void finishCurrent() {
+      if (current != null) {
+        current.setSnippet(snippet.toString().trim());
+        snippet.setLength(0);
+      }
+    }
+
+    private String resolve(String href) {
+      if (href == null || href.isBlank() || href.startsWith("#") || href.startsWith("javascript:")) {
+        return null;
+      }
+      HttpUrl url = base != null ? base.resolve(href) : HttpUrl.parse(href);
+      return url != null ? url.toString() : null;
+    }
+  }
+
+  /**
+   * 正文文本收集器
+   */
+  private static class TextCollector implements Handler {
+    private final int maxChars;
+    private final StringBuilder text = new StringBuilder();
+    private int skipDepth; // 处于导航、页眉页脚等区域中的嵌套深度
+
+    TextCollector(int maxChars) {
+      this.maxChars = maxChars;
+    }
+
+    @Override
+    public boolean onTag(String name, boolean closing, String raw) {
+      if (isBoilerplate(name)) {
+        skipDepth = Math.max(0, skipDepth + (closing ? -1 : 1));
+        return true;
+      }
+      if (skipDepth == 0 && isBlock(name) && text.length() > 0 && text.charAt(text.length() - 1) != '\n') {
+        if (text.charAt(text.length() - 1) == ' ') {
+          text.setLength(text.length() - 1);
+        }
+        text.append('\n');
+      }
+      return true;
+    }
+
+    @Override
+    public boolean onText(char c) {
+      if (skipDepth == 0) {
+        appendCollapsed(text, c);
+      }
+      return text.length() < maxChars;
+    }
+
+    private static boolean isBoilerplate(String name) {
+      switch (name) {
+        case "nav":
+        case "header":
+        case "footer":
+        case "aside":
+        case "form":
+        case "noscript":
+        case "select":
+          return true;
+        default:
+          return false;
+      }
+    }
+  }
+
+  private static boolean isBlock(String name) {
+    switch (name) {
+      case "p":
+      case "div":
+      case "br":
+      case "li":
+      case "tr":
+      case "section":
+      case "article":
+      case "h1":
+      case "h2":
+      case "h3":
+      case "h4":
+      case "h5":
+      case "h6":
+        return true;
+      default:
+        return false;
+    }
+  }
+}
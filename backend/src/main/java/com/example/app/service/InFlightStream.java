@@ -0,0 +1,301 @@
+package com.example.app.service;
+
+import com.example.app.model.Result;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+import java.util.function.LongConsumer;
+import okhttp3.Call;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+/**
+ * 正在进行中的一次流式回答，可被多个SSE发射器共同订阅
+ *
+ * <p>生产者（第一个提问的请求）只负责调用 {@link #publish}，数据块会被记录并广播给所有订阅者；
+ * 后加入的订阅者先回放已产生的数据块，再跟随实时增量。最后一个订阅者离开时取消上游调用。
+ * 生产者只记录数据块并为有新数据的订阅者派发写出任务，写出都在写出线程池中进行，每个订阅者同一时刻最多
+ * 一个写出任务，按自己的游标依次写出；慢订阅者或半开连接只占住一个写出线程，不会拖慢上游读取和其他订阅者。
+ */
+public class InFlightStream {
+  private static final Logger log = LoggerFactory.getLogger(InFlightStream.class);
+
+  private final String key;
+  private final Consumer<InFlightStream> onClose; // 结束或取消时从注册表中移除
+  private final Executor writer; // 向订阅者写出数据块的线程池
+  private final List<Object> chunks = new ArrayList<>(); // 已产生的数据块，用于回放；拒绝时最后一块为Result
+  private final List<Subscriber> subscribers = new ArrayList<>();
+  private final AtomicBoolean producerClaimed = new AtomicBoolean();
+  private final long startNanos = System.nanoTime();
+
+  private boolean finished;
+  private volatile boolean cancelled;
+  private volatile Call upstreamCall; // 当前正在执行的上游HTTP调用
+  private LongConsumer firstChunkListener; // 首个数据块发布时回调，参数为距流创建的纳秒数
+
+  /**
+   * 构造函数
+   *
+   * @param key     归一化后的问题键
+   * @param onClose 流结束或取消时的回调
+   * @param writer  写出线程池
+   */
+  public InFlightStream(String key, Consumer<InFlightStream> onClose, Executor writer) {
+    this.key = key;
+    this.onClose = onClose;
+    this.writer = writer;
+  }
+
+  public String getKey() {
+    return key;
+  }
+
+  /**
+   * 抢占生产者身份，只有第一个调用者返回true，并负责调用上游模型
+   *
+   * @return 是否成为生产者
+   */
+  public boolean claimProducer() {
+    return producerClaimed.compareAndSet(false, true);
+  }
+
+  /**
+   * 注册首个数据块的回调，用于统计首字延迟
+   *
+   * @param listener 回调，参数为距流创建的纳秒数
+   */
+  public synchronized void onFirstChunk(LongConsumer listener) {
+    this.firstChunkListener = listener;
+  }
+
+  /**
+   * 订阅该流：先回放已产生的数据块，再加入实时广播
+   *
+   * @param emitter SSE发射器
+   * @return 流已结束或已取消时返回false，调用方需要重新创建流
+   */
+  public boolean subscribe(SseEmitter emitter) {
+    Subscriber subscriber = new Subscriber(emitter);
+    boolean replay;
+    synchronized (this) {
+      if (finished || cancelled) {
+        return false;
+      }
+      subscribers.add(subscriber);
+      replay = markScheduled(subscriber);
+    }
+    emitter.onCompletion(() -> unsubscribe(emitter));
+    emitter.onTimeout(() -> unsubscribe(emitter));
+    emitter.onError(error -> unsubscribe(emitter));
+    if (replay) {
+      schedule(subscriber);
+    }
+    return true;
+  }
+
+  /**
+   * 取消订阅，最后一个订阅者离开时取消上游调用
+   *
+   * @param emitter SSE发射器
+   */
+  public void unsubscribe(SseEmitter emitter) {
+    boolean last;
+    synchronized (this) {
+      if (!subscribers.removeIf(subscriber -> subscriber.emitter == emitter)) {
+        return;
+      }
+      last = markCancelledIfOrphaned();
+    }
+    if (last) {
+      cancelUpstream();
+    }
+  }
+
+  /**
+   * 发布数据块：记录后为每个订阅者派发写出任务，结束时由写出任务关闭各订阅者
+   *
+   * @param delta  内容增量
+   * @param finish 是否结束
+   */
+  public void publish(String delta, boolean finish) {
+    Map<String, Object> payload = new HashMap<>();
+    payload.put("delta", delta); // 内容增量
+    payload.put("finish", finish); // 是否结束标记
+    append(payload, finish);
+  }
+
+  /**
+   * 拒绝该流：向所有订阅者发送错误结果并关闭，用于上游调用开始前的拒绝
+   *
+   * @param message 错误提示
+   */
+  public void reject(String message) {
+    append(Result.error(message), true);
+  }
+
+  private void append(Object payload, boolean finish) {
+    List<Subscriber> targets;
+    LongConsumer firstChunk;
+    synchronized (this) {
+      if (finished) {
+        return;
+      }
+      firstChunk = chunks.isEmpty() && payload instanceof Map ? firstChunkListener : null;
+      chunks.add(payload);
+      if (finish) {
+        finished = true;
+      }
+      // 已有写出任务的订阅者会在该任务中写出新数据块，无需重复派发
+      targets = new ArrayList<>();
+      for (Subscriber subscriber : subscribers) {
+        if (markScheduled(subscriber)) {
+          targets.add(subscriber);
+        }
+      }
+    }
+    if (firstChunk != null) {
+      firstChunk.accept(System.nanoTime() - startNanos);
+    }
+    for (Subscriber subscriber : targets) {
+      schedule(subscriber);
+    }
+    if (finish) {
+      onClose.accept(this);
+    }
+  }
+
+  /**
+   * 拼接已发布的全部内容增量
+   *
+   * @return 当前已产生的完整文本
+   */
+  public synchronized String answerText() {
+    StringBuilder text = new StringBuilder();
+    for (Object chunk : chunks) {
+      if (chunk instanceof Map<?, ?> delta) {
+        text.append(delta.get("delta"));
+      }
+    }
+    return text.toString();
+  }
+
+  /**
+   * 绑定当前的上游调用，流已取消时立即取消该调用
+   *
+   * @param call 上游HTTP调用
+   */
+  public void bindUpstream(Call call) {
+    this.upstreamCall = call;
+    if (cancelled) {
+      call.cancel();
+    }
+  }
+
+  /**
+   * 所有订阅者都已离开，生产者应尽快停止
+   *
+   * @return 是否已取消
+   */
+  public boolean isCancelled() {
+    return cancelled;
+  }
+
+  private boolean markCancelledIfOrphaned() {
+    if (!subscribers.isEmpty() || finished || cancelled) {
+      return false;
+    }
+    cancelled = true;
+    return true;
+  }
+
+  private void cancelUpstream() {
+    log.info("All subscribers left, cancelling upstream stream {}", key);
+    Call call = upstreamCall;
+    if (call != null) {
+      call.cancel();
+    }
+    onClose.accept(this);
+  }
+
+  /**
+   * 订阅者有未写出的数据块且没有写出任务时，标记为已派发，需在持有锁时调用
+   *
+   * @return 调用方是否需要派发写出任务
+   */
+  private boolean markScheduled(Subscriber subscriber) {
+    if (subscriber.scheduled || subscriber.next >= chunks.size()) {
+      return false;
+    }
+    subscriber.scheduled = true;
+    return true;
+  }
+
+  private void schedule(Subscriber subscriber) {
+    try {
+      writer.execute(() -> drain(subscriber));
+    } catch (RejectedExecutionException error) {
+      log.warn("Stream writer rejected subscriber of {}: {}", key, error.getMessage());
+      subscriber.emitter.completeWithError(error);
+      unsubscribe(subscriber.emitter);
+    }
+  }
+
+  /**
+   * 在写出线程中把订阅者游标之后的数据块按顺序写出，写出在锁外进行
+   *
+   * <p>写出期间发布的数据块不会另行派发，由本任务写完当前批次后继续补发，没有新数据时才清除派发标记。
+   */
+  private void drain(Subscriber subscriber) {
+    while (true) {
+      List<Object> pending;
+      synchronized (this) {
+        if (subscriber.next >= chunks.size()) {
+          subscriber.scheduled = false;
+          return;
+        }
+        pending = new ArrayList<>(chunks.subList(subscriber.next, chunks.size()));
+        subscriber.next = chunks.size();
+      }
+      for (Object chunk : pending) {
+        if (!send(subscriber.emitter, chunk)) {
+          unsubscribe(subscriber.emitter); // 客户端已断开
+          return;
+        }
+        if (chunk instanceof Result || chunk instanceof Map<?, ?> delta && Boolean.TRUE.equals(delta.get("finish"))) {
+          subscriber.emitter.complete(); // 结束SSE连接
+          return;
+        }
+      }
+    }
+  }
+
+  private boolean send(SseEmitter emitter, Object payload) {
+    try {
+      emitter.send(payload);
+      return true;
+    } catch (Exception error) {
+      log.warn("Send chunk to subscriber failed: {}", error.getMessage());
+      emitter.completeWithError(error); // 发送错误并结束连接
+      return false;
+    }
+  }
+
+  /**
+   * 订阅者及其回放游标
+   */
+  private static class Subscriber {
+    private final SseEmitter emitter;
+    private int next; // 下一个要写出的数据块下标
+    private boolean scheduled; // 是否已有写出任务在排队或执行
+
+    Subscriber(SseEmitter emitter) {
+      this.emitter = emitter;
+    }
+  }
+}
@@ -0,0 +1,114 @@
+package com.example.app.service;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+/**
+ * 进行中流式回答的注册表，相同问题的并发请求共享同一次上游调用
+ *
+ * <p>所有流共用一个固定大小的写出线程池，生产者线程只负责读取上游并派发写出任务。
+ */
+@Component
+public class InFlightStreamRegistry {
+  private static final Logger log = LoggerFactory.getLogger(InFlightStreamRegistry.class);
+
+  private final Map<String, InFlightStream> streams = new ConcurrentHashMap<>();
+  private final LongAdder started = new LongAdder(); // 实际发起的上游流数量
+  private final LongAdder joined = new LongAdder(); // 复用已有流的订阅数量
+  private ExecutorService writer;
+
+  @Value("${sse.stream-writer-threads:32}")
+  private int writerThreads; // 共享流写出线程数
+
+  @PostConstruct
+  public void init() {
+    // 每个订阅者最多一个写出任务在排队，队列长度受订阅者数量约束
+    AtomicInteger counter = new AtomicInteger();
+    writer = Executors.newFixedThreadPool(writerThreads, task -> {
+      Thread thread = new Thread(task, "stream-writer-" + counter.incrementAndGet());
+      thread.setDaemon(true);
+      return thread;
+    });
+  }
+
+  @PreDestroy
+  public void shutdown() {
+    writer.shutdownNow();
+  }
+
+  /**
+   * 将发射器挂到该问题对应的进行中流上，不存在时新建
+   *
+   * <p>调用方需要通过 {@link InFlightStream#claimProducer()} 判断是否由自己负责调用上游。
+   *
+   * @param question 用户问题
+   * @param emitter  SSE发射器
+   * @return 已订阅的流
+   */
+  public InFlightStream attach(String question, SseEmitter emitter) {
+    String key = normalize(question);
+    while (true) {
+      boolean[] created = new boolean[1];
+      InFlightStream stream = streams.computeIfAbsent(key, k -> {
+        created[0] = true;
+        return new InFlightStream(k, this::release, writer);
+      });
+      if (stream.subscribe(emitter)) {
+        if (created[0]) {
+          started.increment();
+        } else {
+          joined.increment();
+          log.info("Joined in-flight stream for key {}", key);
+        }
+        return stream;
+      }
+      // 流恰好已结束或取消，移除后重试
+      streams.remove(key, stream);
+    }
+  }
+
+  /**
+   * 当前进行中的流数量
+   *
+   * @return 流数量
+   */
+  public int activeCount() {
+    return streams.size();
+  }
+
+  public long startedCount() {
+    return started.sum();
+  }
+
+  public long joinedCount() {
+    return joined.sum();
+  }
+
+  /**
+   * 归一化问题文本：去除首尾空白与结尾标点、合并连续空白、统一小写
+   *
+   * @param question 用户问题
+   * @return 归一化后的键
+   */
+  static String normalize(String question) {
+    String text = question == null ? "" : question.trim().toLowerCase(Locale.ROOT);
+    text = text.replaceAll("\\s+", " ");
+    return text.replaceAll("[\\s?？!！。.,，]+$", "");
+  }
+
+  private void release(InFlightStream stream) {
+    streams.remove(stream.getKey(), stream);
+  }
+}
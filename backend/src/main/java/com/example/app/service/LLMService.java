@@ -1,5 +1,6 @@
 package com.example.app.service;
 
+import com.example.app.model.TokenUsage;
 import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
@@ -9,8 +10,10 @@ import java.io.InputStreamReader;
 import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import okhttp3.Call;
 import okhttp3.MediaType;
 import okhttp3.OkHttpClient;
 import okhttp3.Request;
@@ -29,10 +32,20 @@ import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 public class LLMService {
   private static final Logger log = LoggerFactory.getLogger(LLMService.class);
   private static final MediaType JSON = MediaType.parse("application/json; charset=utf-8");
+  private static final Map<String, Object> STREAM_OPTIONS = Map.of("include_usage", true);
 
   private final OkHttpClient okHttpClient;
   private final ObjectMapper objectMapper;
-  private final ToolService toolService;
+  private final ToolRegistry toolRegistry;
+  private final ToolSpeculator toolSpeculator;
+  private final ToolResultCompactor toolResultCompactor;
+  private final LocalIntentRouter intentRouter;
+  private final InFlightStreamRegistry streamRegistry;
+  private final UsageMeter usageMeter;
+  private final SemanticAnswerCache semanticCache;
+  private final ClusterCache clusterCache;
+  private final StartupMetrics startupMetrics;
+  private final ConcurrencyLimiter concurrencyLimiter;
 
   @Value("${ai.base-url:https://api.openai.com}")
   private String baseUrl; // AI模型API基础URL
@@ -51,93 +64,236 @@ public class LLMService {
    * 
    * @param okHttpClient OkHttp客户端实例
    * @param objectMapper Jackson对象映射器
-   * @param toolService  工具服务实例
+   * @param toolRegistry 工具注册表
+   * @param toolSpeculator 工具预执行服务
+   * @param toolResultCompactor 工具结果压缩，控制后续请求的token数量
+   * @param intentRouter  本地意图路由，简单问题不调用模型
+   * @param streamRegistry 进行中流式回答的注册表
+   * @param usageMeter   token计量服务
+   * @param semanticCache 语义答案缓存
+   * @param clusterCache  集群共享缓存，按规范化问题在节点间共享答案
+   * @param startupMetrics 启动统计，记录首个请求的首字延迟
+   * @param concurrencyLimiter 自适应并发限制，生产者调用模型前占用名额，流式调用的首字延迟和上游失败作为调整依据
    */
-  public LLMService(OkHttpClient okHttpClient, ObjectMapper objectMapper, ToolService toolService) {
+  public LLMService(OkHttpClient okHttpClient, ObjectMapper objectMapper, ToolRegistry toolRegistry,
+      ToolSpeculator toolSpeculator, ToolResultCompactor toolResultCompactor, LocalIntentRouter intentRouter,
+      InFlightStreamRegistry streamRegistry, UsageMeter usageMeter, SemanticAnswerCache semanticCache,
+      ClusterCache clusterCache, StartupMetrics startupMetrics, ConcurrencyLimiter concurrencyLimiter) {
     this.okHttpClient = okHttpClient;
     this.objectMapper = objectMapper;
-    this.toolService = toolService;
+    this.toolRegistry = toolRegistry;
+    this.toolSpeculator = toolSpeculator;
+    this.toolResultCompactor = toolResultCompactor;
+    this.intentRouter = intentRouter;
+    this.streamRegistry = streamRegistry;
+    this.usageMeter = usageMeter;
+    this.semanticCache = semanticCache;
+    this.clusterCache = clusterCache;
+    this.startupMetrics = startupMetrics;
+    this.concurrencyLimiter = concurrencyLimiter;
   }
 
   /**
    * 流式回答用户问题
    * 
+   * <p>算式、单位换算、日期时间等简单问题先由本地意图路由直接回答，不消耗token。
+   * 相同问题正在回答时，新的发射器直接订阅已有的流，不再重复调用模型。
+   * 调用模型前检查该客户端的滚动token预算，超出时直接拒绝。
+   * 只有真正调用模型的生产者占用并发名额，名额在生产者结束时归还；名额已满时拒绝，已订阅的请求一并收到错误结果。
+   * 
    * @param question  用户问题
    * @param sessionId 会话ID
+   * @param clientKey 客户端API Key，用于计量，可为空
+   * @param clientAddress 客户端地址，没有API Key时用于计量
    * @param emitter   SSE发射器，用于向客户端发送流式响应
+   * @return 并发名额已满、请求被拒绝时返回false
    */
-  public void streamAnswer(String question, String sessionId, SseEmitter emitter) {
+  public boolean streamAnswer(String question, String sessionId, String clientKey, String clientAddress,
+      SseEmitter emitter) {
+    String local = intentRouter.route(question);
+    if (local != null) {
+      replyDirectly(emitter, local);
+      return true;
+    }
+    String meterKey = usageMeter.resolveKey(clientKey, clientAddress);
+    if (usageMeter.isOverBudget(meterKey)) {
+      log.warn("LLM request {} rejected, token budget exceeded for {}", sessionId, meterKey);
+      replyDirectly(emitter, "当前额度已用尽，请稍后再试");
+      return true;
+    }
+    InFlightStream stream = streamRegistry.attach(question, emitter);
+    if (!stream.claimProducer()) {
+      log.info("LLM request {} joined in-flight stream", sessionId);
+      return true;
+    }
+    if (!concurrencyLimiter.tryAcquire()) {
+      log.warn("LLM request {} shed, concurrency limit reached", sessionId);
+      stream.reject("服务繁忙，请" + concurrencyLimiter.retryAfterSeconds() + "秒后重试");
+      return false;
+    }
     // 在新线程中处理，避免阻塞主线程
     new Thread(() -> {
       try {
         log.info("LLM request start {}", sessionId);
 
-        // 特殊处理：直接处理数学计算请求
-        if (question.startsWith("计算：")) {
-          // 提取数学表达式
-          String expr = question.substring(3).trim();
-          log.info("直接处理数学计算: {}", expr);
-
-          // 直接调用calc工具
-          String result = executeTool("calc", Map.of("expr", expr));
-          log.info("计算结果: {}", result);
-
-          // 直接返回计算结果
-          sendChunk(emitter, result, true);
+        // 语义相似的问题已有答案时直接返回
+        String cached = semanticCache.lookup(question);
+        if (cached == null) {
+          // 其他节点回答过同样的问题
+          cached = clusterCache.get(answerKey(question));
+        }
+        if (cached != null) {
+          sendChunk(stream, cached, true);
           return;
         }
 
         // 正常处理流程
-        // 第一次调用AI模型，携带工具定义
-        JsonNode firstResponse = callWithTools(question);
-        // 检查是否需要调用工具
-        if (hasToolCalls(firstResponse)) {
-          // 构建工具调用后续请求
-          Map<String, Object> streamPayload = buildToolFollowup(firstResponse, question);
-          // 流式返回最终答案
-          streamFinalAnswer(streamPayload, emitter);
-        } else {
-          // 直接返回答案
-          String content = firstResponse.path("choices").path(0).path("message").path("content").asText();
-          sendChunk(emitter, content, true);
+        // 缓存命中的回答不反映上游延迟，只统计真正调用模型的首字延迟；并发限制只采样流式调用的首字延迟
+        stream.onFirstChunk(startupMetrics::recordFirstAsk);
+        // 预测模型可能请求的工具并提前执行，与第一次模型调用并行
+        ToolSpeculator.Speculation speculation = toolSpeculator.start(question);
+        try {
+          // 第一次调用AI模型，携带工具定义
+          JsonNode firstResponse = callWithTools(question, stream, meterKey);
+          if (stream.isCancelled()) {
+            log.info("LLM request {} cancelled, no subscribers left", sessionId);
+            return;
+          }
+          // 检查是否需要调用工具
+          if (hasToolCalls(firstResponse)) {
+            // 构建工具调用后续请求
+            Map<String, Object> streamPayload = buildToolFollowup(firstResponse, question, speculation);
+            // 流式返回最终答案，成功后写入缓存
+            if (streamFinalAnswer(streamPayload, stream, meterKey)) {
+              rememberAnswer(question, stream.answerText());
+            }
+          } else {
+            // 直接返回答案
+            String content = firstResponse.path("choices").path(0).path("message").path("content").asText();
+            sendChunk(stream, content, true);
+            rememberAnswer(question, content);
+          }
+        } finally {
+          // 取消未被模型请求的预执行
+          speculation.finish();
         }
       } catch (Exception error) {
+        if (stream.isCancelled()) {
+          log.info("LLM request {} cancelled: {}", sessionId, error.getMessage());
+          return;
+        }
+        // 上游失败已在调用处计入并发限制，这里多为本地错误，不再收缩上限
         log.error("LLM streaming failed", error);
-        sendChunk(emitter, "服务异常", true);
+        sendChunk(stream, "服务异常", true);
+      } finally {
+        concurrencyLimiter.release();
       }
     }).start();
+    return true;
+  }
+
+  /**
+   * 答案写入本节点的语义缓存和集群共享缓存
+   * 
+   * @param question 用户问题
+   * @param answer   完整答案
+   */
+  private void rememberAnswer(String question, String answer) {
+    semanticCache.put(question, answer);
+    clusterCache.put(answerKey(question), answer);
+  }
+
+  private static String answerKey(String question) {
+    return "answer:" + InFlightStreamRegistry.normalize(question);
   }
 
   /**
    * 调用AI模型，携带工具定义
    * 
    * @param question 用户问题
+   * @param stream   当前流，用于绑定上游调用以便取消
+   * @param meterKey 计量键
    * @return AI模型响应
    * @throws IOException IO异常
    */
-  private JsonNode callWithTools(String question) throws IOException {
-    Map<String, Object> payload = new HashMap<>();
+  private JsonNode callWithTools(String question, InFlightStream stream, String meterKey) throws IOException {
+    // 自动选择是否调用工具
+    return postJson(buildPayload(openingMessages(question), "auto", false), stream, meterKey);
+  }
+
+  /**
+   * 构建请求体，字段顺序与取值固定
+   * 
+   * <p>上游按前缀缓存提示词，系统提示与工具定义渲染在最前面，其后依次是历史消息和本轮消息。
+   * 请求体按同样的顺序序列化：模型、工具定义、消息，随后才是每次调用可能不同的参数。
+   * 首次调用与工具后续调用使用同一份系统提示、工具定义和参数，只在末尾追加消息，
+   * 后续调用即可命中前一次调用的缓存前缀；不同请求之间也共享系统提示与工具定义这段前缀。
+   * 
+   * @param messages   消息列表，首条为系统提示
+   * @param toolChoice 工具选择策略，只改变采样约束，不影响提示词前缀
+   * @param stream     是否启用流式响应
+   * @return 请求体
+   */
+  private Map<String, Object> buildPayload(List<Map<String, Object>> messages, String toolChoice, boolean stream) {
+    Map<String, Object> payload = new LinkedHashMap<>();
     payload.put("model", model);
-    // 构建消息列表
-    payload.put("messages", List.of(
-        Map.of("role", "system", "content", systemPrompt),
-        Map.of("role", "user", "content", question)));
-    // 添加工具定义
-    payload.put("tools", buildTools());
-    payload.put("tool_choice", "auto"); // 自动选择是否调用工具
-
-    // 针对DeepSeek API，调整参数设置
+    payload.put("tools", toolRegistry.schemas());
+    payload.put("messages", messages);
+    // 两次调用之间不同的字段放在消息之后，不打断相同的前缀
+    payload.put("tool_choice", toolChoice);
+    payload.put("stream", stream);
+    if (stream) {
+      payload.put("stream_options", STREAM_OPTIONS); // 在最后一个数据块中返回usage
+    }
+    // 针对DeepSeek API，两次调用都禁用DSML格式，保持参数一致
     if (baseUrl.contains("deepseek")) {
-      // 移除dsml参数，避免返回DSML格式
       payload.put("dsml", "false");
-      // 不使用json_object格式，避免API错误
-      payload.remove("response_format");
-    } else {
-      // 其他API不强制使用json_object格式，避免API错误
-      payload.remove("response_format");
     }
+    return payload;
+  }
+
+  /**
+   * 每轮对话开头的消息：系统提示与用户问题
+   * 
+   * @param question 用户问题
+   * @return 可继续追加的消息列表
+   */
+  private List<Map<String, Object>> openingMessages(String question) {
+    List<Map<String, Object>> messages = new ArrayList<>();
+    messages.add(message("system", systemPrompt));
+    messages.add(message("user", question));
+    return messages;
+  }
 
-    return postJson(payload);
+  /**
+   * 构建消息，字段顺序固定。Map.of的遍历顺序每次启动都不同，会破坏序列化结果的稳定性
+   * 
+   * @param role    角色
+   * @param content 内容
+   * @return 消息
+   */
+  private static Map<String, Object> message(String role, Object content) {
+    Map<String, Object> message = new LinkedHashMap<>();
+    message.put("role", role);
+    message.put("content", content);
+    return message;
+  }
+
+  /**
+   * 构建工具结果消息
+   * 
+   * @param toolCallId 工具调用ID
+   * @param toolName   工具名称
+   * @param result     工具执行结果
+   * @return 消息
+   */
+  private static Map<String, Object> toolMessage(String toolCallId, String toolName, String result) {
+    Map<String, Object> message = new LinkedHashMap<>();
+    message.put("role", "tool");
+    message.put("tool_call_id", toolCallId);
+    message.put("name", toolName);
+    message.put("content", result);
+    return message;
   }
 
   /**
@@ -171,16 +327,18 @@ public class LLMService {
    * 
    * @param response 包含工具调用的AI响应
    * @param question 用户原始问题
+   * @param speculation 本轮的工具预执行，匹配的调用直接复用结果
    * @return 构建好的请求体
    * @throws IOException IO异常
    */
-  private Map<String, Object> buildToolFollowup(JsonNode response, String question) throws IOException {
-    List<Map<String, Object>> messages = new ArrayList<>();
-    // 添加系统提示和用户问题
-    messages.add(Map.of("role", "system", "content", systemPrompt));
-    messages.add(Map.of("role", "user", "content", question));
-
-    List<Map<String, Object>> toolResults = new ArrayList<>();
+  private Map<String, Object> buildToolFollowup(JsonNode response, String question,
+      ToolSpeculator.Speculation speculation) throws IOException {
+    // 与首次调用相同的系统提示和用户问题，保证前缀一致
+    List<Map<String, Object>> messages = openingMessages(question);
+    // 工具结果先收集，整轮压缩后再写入消息
+    List<String> callIds = new ArrayList<>();
+    List<String> toolNames = new ArrayList<>();
+    List<String> results = new ArrayList<>();
 
     // 检查是否为DSML格式响应
     JsonNode content = response.path("choices").path(0).path("message").path("content");
@@ -196,10 +354,7 @@ public class LLMService {
         log.info("DSML tool calls parsed: {}", dsmlToolCalls.size());
 
         // 添加AI的工具调用消息（包含DSML格式）
-        Map<String, Object> aiMessageMap = new HashMap<>();
-        aiMessageMap.put("role", "assistant");
-        aiMessageMap.put("content", dsmlContent);
-        messages.add(aiMessageMap);
+        messages.add(message("assistant", dsmlContent));
 
         // 执行每个工具调用
         for (int i = 0; i < dsmlToolCalls.size(); i++) {
@@ -207,20 +362,12 @@ public class LLMService {
           String toolName = (String) toolCall.get("name");
           Map<String, Object> args = (Map<String, Object>) toolCall.get("arguments");
           // 执行工具
-          String result = executeTool(toolName, args);
+          String result = executeTool(toolName, args, speculation);
           log.info("Tool execution result for {}: {}", toolName, result);
-          // 构建工具结果消息
-          Map<String, Object> toolMessage = new HashMap<>();
-          toolMessage.put("role", "tool");
-          toolMessage.put("tool_call_id", "dsml-tool-call-" + i); // 添加唯一ID
-          toolMessage.put("name", toolName);
-          toolMessage.put("content", result);
-          messages.add(toolMessage);
-          // 保存工具结果，用于构建最终请求
-          toolResults.add(Map.of(
-              "role", "tool",
-              "name", toolName,
-              "content", result));
+          // 工具结果使用唯一ID
+          callIds.add("dsml-tool-call-" + i);
+          toolNames.add(toolName);
+          results.add(result);
         }
       }
     } else {
@@ -228,14 +375,11 @@ public class LLMService {
       JsonNode toolCalls = response.path("choices").path(0).path("message").path("tool_calls");
       log.info("Tool calls detected {}", toolCalls.size());
 
-      // 添加AI的工具调用消息（完整的AI回复）
+      // 添加AI的工具调用消息，tool_calls原样回传，保持上游返回的字段顺序
       JsonNode aiMessage = response.path("choices").path(0).path("message");
-      Map<String, Object> aiMessageMap = new HashMap<>();
+      Map<String, Object> aiMessageMap = new LinkedHashMap<>();
       aiMessageMap.put("role", aiMessage.path("role").asText());
-      aiMessageMap.put("tool_calls",
-          objectMapper.readValue(aiMessage.path("tool_calls").toString(),
-              new TypeReference<List<Map<String, Object>>>() {
-              }));
+      aiMessageMap.put("tool_calls", aiMessage.path("tool_calls"));
       messages.add(aiMessageMap);
 
       // 执行每个工具调用
@@ -246,38 +390,35 @@ public class LLMService {
         Map<String, Object> args = objectMapper.readValue(arguments, new TypeReference<Map<String, Object>>() {
         });
         // 执行工具
-        String result = executeTool(toolName, args);
+        String result = executeTool(toolName, args, speculation);
         log.info("Tool execution result for {}: {}", toolName, result);
-        // 构建工具结果消息
-        Map<String, Object> toolMessage = new HashMap<>();
-        toolMessage.put("role", "tool");
-        toolMessage.put("tool_call_id", toolCall.path("id").asText());
-        toolMessage.put("name", toolName);
-        toolMessage.put("content", result);
-        messages.add(toolMessage);
-        // 保存工具结果，用于构建最终请求
-        toolResults.add(Map.of(
-            "role", "tool",
-            "name", toolName,
-            "content", result));
+        callIds.add(toolCall.path("id").asText());
+        toolNames.add(toolName);
+        results.add(result);
       }
     }
 
-    // 构建最终请求体
-    Map<String, Object> payload = new HashMap<>();
-    payload.put("model", model);
-    payload.put("messages", messages);
-    payload.put("stream", true); // 启用流式响应
-
-    // 针对DeepSeek API，添加参数确保返回自然语言回答
-    if (baseUrl.contains("deepseek")) {
-      // 禁用DSML格式，返回普通JSON
-      payload.put("dsml", "false");
-      // 确保返回自然语言，不要返回DSML格式
-      payload.put("response_format", Map.of("type", "text"));
+    // 去重并按token预算压缩后构建工具结果消息
+    List<String> compacted = toolResultCompactor.compact(question, results);
+    for (int i = 0; i < compacted.size(); i++) {
+      messages.add(toolMessage(callIds.get(i), toolNames.get(i), compacted.get(i)));
     }
 
-    return payload;
+    // 构建最终请求体：工具定义保持不变以复用缓存前缀，禁止再次调用工具
+    return buildPayload(messages, "none", true);
+  }
+
+  /**
+   * 执行工具调用，优先复用匹配的预执行结果
+   * 
+   * @param toolName    工具名称
+   * @param args        工具参数
+   * @param speculation 本轮的工具预执行
+   * @return 工具执行结果
+   */
+  private String executeTool(String toolName, Map<String, Object> args, ToolSpeculator.Speculation speculation) {
+    String speculated = speculation.claim(toolName, args);
+    return speculated != null ? speculated : toolRegistry.execute(toolName, args);
   }
 
   /**
@@ -342,30 +483,49 @@ public class LLMService {
   /**
    * 流式获取最终答案
    * 
-   * @param payload 请求体
-   * @param emitter SSE发射器
+   * @param payload  请求体
+   * @param stream   当前流
+   * @param meterKey 计量键
+   * @return 是否完整地返回了答案
    * @throws IOException IO异常
    */
-  private void streamFinalAnswer(Map<String, Object> payload, SseEmitter emitter) throws IOException {
-    Request request = buildRequest(payload, true);
+  private boolean streamFinalAnswer(Map<String, Object> payload, InFlightStream stream, String meterKey)
+      throws IOException {
+    String requestJson = objectMapper.writeValueAsString(payload);
+    Request request = buildRequest(requestJson);
     log.info("Final answer request URL: {}", request.url());
-    log.info("Final answer request body: {}", objectMapper.writeValueAsString(payload));
-
-    try (Response response = okHttpClient.newCall(request).execute()) {
+    log.info("Final answer request body: {}", requestJson);
+
+    StringBuilder answer = new StringBuilder(); // 已收到的回答，用于上游缺失usage时估算
+    JsonNode usageNode = null;
+    boolean accepted = false; // 上游是否已接受请求并开始计费
+    boolean finished = false;
+    long start = System.nanoTime();
+    long firstTokenNanos = -1; // 首个内容块的延迟，衡量提示词缓存对首字时间的影响
+
+    Call call = okHttpClient.newCall(request);
+    stream.bindUpstream(call);
+    try (Response response = call.execute()) {
       log.info("Final answer response status: {}", response.code());
 
       if (!response.isSuccessful() || response.body() == null) {
         String errorMsg = String.format("模型响应失败: %d", response.code());
         log.error(errorMsg);
-        sendChunk(emitter, errorMsg, true);
-        return;
+        concurrencyLimiter.onDrop();
+        sendChunk(stream, errorMsg, true);
+        return false;
       }
+      accepted = true;
 
       // 读取流式响应
       BufferedReader reader = new BufferedReader(
           new InputStreamReader(response.body().byteStream(), StandardCharsets.UTF_8));
       String line;
       while ((line = reader.readLine()) != null) {
+        if (stream.isCancelled()) {
+          log.info("Final answer stream cancelled, no subscribers left");
+          return false;
+        }
         log.debug("Raw SSE line: {}", line);
         if (!line.startsWith("data:")) {
           continue;
@@ -379,14 +539,18 @@ public class LLMService {
           // 解析SSE数据
           JsonNode chunk = objectMapper.readTree(data);
           log.debug("Parsed SSE chunk: {}", chunk);
+          if (chunk.path("usage").isObject()) {
+            usageNode = chunk.path("usage");
+          }
 
           // 检查是否有错误
           JsonNode error = chunk.path("error");
           if (!error.isMissingNode()) {
             String errorMsg = String.format("模型错误: %s", error.path("message").asText());
             log.error(errorMsg);
-            sendChunk(emitter, errorMsg, true);
-            return;
+            concurrencyLimiter.onDrop();
+            sendChunk(stream, errorMsg, true);
+            return false;
           }
 
           // 处理流式内容
@@ -397,13 +561,19 @@ public class LLMService {
             if (!content.isMissingNode()) {
               // 发送内容更新
               log.debug("Sending delta: {}", content.asText());
-              sendChunk(emitter, content.asText(), false);
+              if (firstTokenNanos < 0) {
+                firstTokenNanos = System.nanoTime() - start;
+                concurrencyLimiter.onSample(firstTokenNanos);
+              }
+              answer.append(content.asText());
+              sendChunk(stream, content.asText(), false);
             }
-            // 检查是否完成
+            // 检查是否完成，先结束客户端流，再继续读取随后的usage数据块
             JsonNode finishReason = choices.path(0).path("finish_reason");
-            if (!finishReason.isMissingNode() && "stop".equals(finishReason.asText())) {
+            if (!finished && !finishReason.isMissingNode() && "stop".equals(finishReason.asText())) {
               log.info("Received finish signal");
-              break;
+              sendChunk(stream, "", true);
+              finished = true;
             }
           }
         } catch (Exception e) {
@@ -411,105 +581,47 @@ public class LLMService {
         }
       }
       // 发送结束标记
-      log.info("Sending final chunk");
-      sendChunk(emitter, "", true);
+      if (!finished) {
+        log.info("Sending final chunk");
+        sendChunk(stream, "", true);
+      }
+      return finished;
     } catch (Exception e) {
+      if (stream.isCancelled()) {
+        return false;
+      }
       log.error("Error in streamFinalAnswer: {}", e.getMessage(), e);
-      sendChunk(emitter, "服务异常", true);
-    }
-  }
-
-  /**
-   * 执行工具调用
-   * 
-   * @param toolName 工具名称
-   * @param args     工具参数
-   * @return 工具执行结果
-   */
-  private String executeTool(String toolName, Map<String, Object> args) {
-    log.info("执行工具调用: {}, 参数: {}", toolName, args);
-
-    if ("search_web".equals(toolName)) {
-      // 执行网络搜索
-      String query = String.valueOf(args.getOrDefault("query", ""));
-      log.info("调用search_web工具，搜索关键词: {}", query);
-      String result = toolService.searchWeb(query);
-      log.info("search_web工具执行结果: {}", result);
-      return result;
-    }
-
-    if ("calc".equals(toolName)) {
-      // 执行数学计算
-      String expr = String.valueOf(args.getOrDefault("expr", ""));
-      log.info("调用自定义calc工具，计算表达式: {}", expr);
-      Object result = toolService.calc(expr);
-      log.info("calc工具执行结果: {}", result);
-      return String.valueOf(result);
+      concurrencyLimiter.onDrop();
+      sendChunk(stream, "服务异常", true);
+      return false;
+    } finally {
+      if (accepted) {
+        recordUsage(meterKey, usageNode, requestJson, answer,
+            firstTokenNanos >= 0 ? firstTokenNanos : System.nanoTime() - start);
+      }
     }
-
-    log.warn("未知工具: {}", toolName);
-    return "未知工具";
-  }
-
-  /**
-   * 构建工具定义列表
-   * 
-   * @return 工具定义列表
-   */
-  private List<Map<String, Object>> buildTools() {
-    List<Map<String, Object>> tools = new ArrayList<>();
-    // 定义search_web工具
-    tools.add(Map.of(
-        "type", "function",
-        "function", Map.of(
-            "name", "search_web",
-            "description", "使用搜索引擎获取实时信息",
-            "parameters", Map.of(
-                "type", "object",
-                "properties", Map.of(
-                    "query", Map.of("type", "string", "description", "搜索关键词")),
-                "required", List.of("query")))));
-    // 定义calc工具
-    tools.add(Map.of(
-        "type", "function",
-        "function", Map.of(
-            "name", "calc",
-            "description", "计算数学表达式",
-            "parameters", Map.of(
-                "type", "object",
-                "properties", Map.of(
-                    "expr", Map.of("type", "string", "description", "数学表达式")),
-                "required", List.of("expr")))));
-    return tools;
   }
 
   /**
    * 发送非流式POST请求
    * 
    * @param payload 请求体
+   * @param stream   当前流，用于绑定上游调用以便取消
+   * @param meterKey 计量键
    * @return AI模型响应
    * @throws IOException IO异常
    */
-  private JsonNode postJson(Map<String, Object> payload) throws IOException {
-    Map<String, Object> bodyMap = new HashMap<>(payload);
-    bodyMap.put("stream", false); // 禁用流式响应
-
-    // 针对DeepSeek API，调整参数设置
-    if (baseUrl.contains("deepseek")) {
-      // 移除可能导致问题的response_format参数
-      bodyMap.remove("response_format");
-      // 确保使用dsml=false避免DSML格式
-      bodyMap.put("dsml", "false");
-    } else {
-      // 其他API也不强制使用json_object格式
-      bodyMap.remove("response_format");
-    }
-
-    Request request = buildRequest(bodyMap, false);
+  private JsonNode postJson(Map<String, Object> payload, InFlightStream stream, String meterKey)
+      throws IOException {
+    String requestJson = objectMapper.writeValueAsString(payload);
+    Request request = buildRequest(requestJson);
     log.info("AI API Request URL: {}", request.url());
-    log.info("AI API Request Body: {}", objectMapper.writeValueAsString(bodyMap));
+    log.info("AI API Request Body: {}", requestJson);
 
-    try (Response response = okHttpClient.newCall(request).execute()) {
+    long start = System.nanoTime();
+    Call call = okHttpClient.newCall(request);
+    stream.bindUpstream(call);
+    try (Response response = call.execute()) {
       log.info("AI API Response Status: {}", response.code());
       log.info("AI API Response Headers: {}", response.headers());
 
@@ -526,29 +638,55 @@ public class LLMService {
 
       String responseBody = response.body().string();
       log.info("AI API Response Body: {}", responseBody);
+      // 非流式调用的耗时是完整生成时间而非首字延迟，不作为并发限制的延迟样本
 
       // 解析JSON响应
-      return objectMapper.readTree(responseBody);
+      JsonNode result = objectMapper.readTree(responseBody);
+      JsonNode message = result.path("choices").path(0).path("message");
+      recordUsage(meterKey, result.path("usage"), requestJson,
+          message.path("content").asText("") + message.path("tool_calls").toString(), System.nanoTime() - start);
+      return result;
+    } catch (IOException error) {
+      // 上游失败或响应无效，收缩并发上限
+      if (!stream.isCancelled()) {
+        concurrencyLimiter.onDrop();
+      }
+      throw error;
     }
   }
 
+  /**
+   * 记录一次模型调用的用量，上游未返回usage时按请求与回答文本本地估算
+   * 
+   * @param meterKey    计量键
+   * @param usageNode   上游返回的usage节点，可为空
+   * @param requestJson 请求体JSON
+   * @param completion  模型输出文本
+   * @param latencyNanos 非流式调用为完整响应耗时，流式调用为首个内容块的延迟
+   */
+  private void recordUsage(String meterKey, JsonNode usageNode, String requestJson, CharSequence completion,
+      long latencyNanos) {
+    TokenUsage usage = usageMeter.parseUsage(usageNode);
+    if (usage == null) {
+      usage = new TokenUsage(TokenEstimator.estimate(requestJson), TokenEstimator.estimate(completion), 0, true);
+    }
+    usageMeter.record(meterKey, usage, latencyNanos);
+  }
+
   /**
    * 构建HTTP请求
    * 
-   * @param payload 请求体
-   * @param stream  是否启用流式响应
+   * @param requestJson 已序列化的请求体，与日志和用量估算共用同一份
    * @return HTTP请求实例
-   * @throws IOException IO异常
    */
-  private Request buildRequest(Map<String, Object> payload, boolean stream) throws IOException {
+  private Request buildRequest(String requestJson) {
     // 根据baseUrl自动调整API路径，兼容不同AI服务
     String path = "/v1/chat/completions";
     if (baseUrl.contains("deepseek")) {
       path = "/chat/completions";
     }
     String url = baseUrl + path;
-    String json = objectMapper.writeValueAsString(payload);
-    RequestBody body = RequestBody.create(json, JSON);
+    RequestBody body = RequestBody.create(requestJson, JSON);
     return new Request.Builder()
         .url(url)
         .addHeader("Authorization", "Bearer " + apiKey) // 添加认证头
@@ -557,21 +695,29 @@ public class LLMService {
   }
 
   /**
-   * 向客户端发送SSE数据块
+   * 向所有订阅者发送SSE数据块
+   * 
+   * @param stream 当前流
+   * @param delta  内容增量
+   * @param finish 是否结束
+   */
+  private void sendChunk(InFlightStream stream, String delta, boolean finish) {
+    stream.publish(delta, finish);
+  }
+
+  /**
+   * 未进入共享流前直接向单个发射器返回消息并结束
    * 
    * @param emitter SSE发射器
-   * @param delta   内容增量
-   * @param finish  是否结束
+   * @param message 提示消息
    */
-  private void sendChunk(SseEmitter emitter, String delta, boolean finish) {
+  private void replyDirectly(SseEmitter emitter, String message) {
     try {
       Map<String, Object> payload = new HashMap<>();
-      payload.put("delta", delta); // 内容增量
-      payload.put("finish", finish); // 是否结束标记
+      payload.put("delta", message); // 内容增量
+      payload.put("finish", true); // 是否结束标记
       emitter.send(payload);
-      if (finish) {
-        emitter.complete(); // 结束SSE连接
-      }
+      emitter.complete(); // 结束SSE连接
     } catch (IOException error) {
       log.error("Send chunk failed", error);
       emitter.completeWithError(error); // 发送错误并结束连接
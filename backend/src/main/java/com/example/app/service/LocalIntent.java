@@ -0,0 +1,44 @@
+package com.example.app.service;
+
+import java.math.BigDecimal;
+import java.math.MathContext;
+
+/**
+ * 可在本地直接回答的问题类型，由 {@link LocalIntentRouter} 在调用模型前依次尝试
+ *
+ * <p>实现类注册为Spring Bean即自动接入。匹配应当严格：只回答能完全确定答案的问题，
+ * 拿不准时返回null交给模型处理，宁可漏判也不误答。
+ */
+public interface LocalIntent {
+
+  /**
+   * 意图名称，用于统计
+   *
+   * @return 名称
+   */
+  String name();
+
+  /**
+   * 尝试在本地回答
+   *
+   * @param question 归一化后的问题：已做NFKC兼容归一、转小写并去除首尾空白
+   * @return 答案文本，不属于该意图时返回null
+   */
+  String answer(String question);
+
+  /**
+   * 格式化数值：按有效位数舍入并去掉多余的零，过大或过小的数使用科学计数法
+   *
+   * @param value             数值
+   * @param significantDigits 保留的有效位数
+   * @return 格式化后的文本
+   */
+  static String formatNumber(double value, int significantDigits) {
+    double abs = Math.abs(value);
+    if (abs != 0 && (abs >= 1e15 || abs < 1e-6)) {
+      return String.format("%." + (significantDigits - 1) + "e", value);
+    }
+    BigDecimal rounded = new BigDecimal(value).round(new MathContext(significantDigits)).stripTrailingZeros();
+    return rounded.signum() == 0 ? "0" : rounded.toPlainString();
+  }
+}
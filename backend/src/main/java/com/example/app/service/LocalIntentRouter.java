@@ -0,0 +1,91 @@
+package com.example.app.service;
+
+import java.text.Normalizer;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+/**
+ * 本地意图路由：调用模型前先用各 {@link LocalIntent} 的预编译规则匹配问题，能确定答案的直接在本地回答
+ *
+ * <p>规则都锚定整句，不匹配时很快失败；过长的问题不可能是简单计算或日期询问，直接跳过。
+ */
+@Service
+public class LocalIntentRouter {
+  private static final Logger log = LoggerFactory.getLogger(LocalIntentRouter.class);
+
+  private final List<LocalIntent> intents;
+  private final Map<String, LongAdder> hits = new LinkedHashMap<>();
+  private final LongAdder fallThrough = new LongAdder();
+  private final LongAdder hitNanos = new LongAdder();
+
+  @Value("${local-intent.enabled:true}")
+  private boolean enabled; // 是否启用本地意图快速回答
+
+  @Value("${local-intent.max-length:64}")
+  private int maxLength; // 超过该长度的问题不尝试本地回答
+
+  /**
+   * 构造函数
+   *
+   * @param intents 所有已注册的本地意图
+   */
+  public LocalIntentRouter(List<LocalIntent> intents) {
+    this.intents = intents;
+    for (LocalIntent intent : intents) {
+      hits.put(intent.name(), new LongAdder());
+    }
+  }
+
+  /**
+   * 尝试在本地回答问题
+   *
+   * @param question 用户问题
+   * @return 本地答案，需要交给模型时返回null
+   */
+  public String route(String question) {
+    if (!enabled || question == null || question.length() > maxLength) {
+      return null;
+    }
+    long start = System.nanoTime();
+    String normalized = Normalizer.normalize(question, Normalizer.Form.NFKC).toLowerCase(Locale.ROOT).trim();
+    for (LocalIntent intent : intents) {
+      String answer = intent.answer(normalized);
+      if (answer != null) {
+        hits.get(intent.name()).increment();
+        hitNanos.add(System.nanoTime() - start);
+        log.info("Answered locally by {}: {}", intent.name(), question);
+        return answer;
+      }
+    }
+    fallThrough.increment();
+    return null;
+  }
+
+  /**
+   * 本地意图统计
+   *
+   * @return 各意图命中次数、交给模型的次数与本地回答的平均耗时
+   */
+  public Map<String, Object> stats() {
+    Map<String, Long> intentHits = new LinkedHashMap<>();
+    long total = 0;
+    for (Map.Entry<String, LongAdder> entry : hits.entrySet()) {
+      long count = entry.getValue().sum();
+      intentHits.put(entry.getKey(), count);
+      total += count;
+    }
+    Map<String, Object> stats = new LinkedHashMap<>();
+    stats.put("hits", intentHits);
+    stats.put("fallThrough", fallThrough.sum());
+    stats.put("avgHitMicros", total > 0 ? TimeUnit.NANOSECONDS.toMicros(hitNanos.sum() / total) : 0);
+    return stats;
+  }
+}
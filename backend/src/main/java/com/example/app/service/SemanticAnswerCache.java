@@ -0,0 +1,189 @@
+package com.example.app.service;
+
+import jakarta.annotation.PostConstruct;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+/**
+ * 语义答案缓存：问题向量化后在HNSW索引中查找相似问题，相似度超过阈值时直接返回已有答案
+ *
+ * <p>字符向量分不清只差一个数字或专名的问题，命中还要求两个问题的 {@link FactSignature} 相同，
+ * 因此查询时依次检查若干个最相似的候选。HNSW不便删除节点，条目过期只在查询时判定；索引写满后整体清空重建。
+ */
+@Service
+public class SemanticAnswerCache {
+  private static final Logger log = LoggerFactory.getLogger(SemanticAnswerCache.class);
+  private static final int CANDIDATES = 8; // 相似度达到阈值后逐个比对事实签名的候选数
+
+  @Value("${semantic-cache.enabled:true}")
+  private boolean enabled; // 是否启用语义缓存
+
+  @Value("${semantic-cache.threshold:0.82}")
+  private double threshold; // 命中所需的最低余弦相似度
+
+  @Value("${semantic-cache.max-entries:20000}")
+  private int maxEntries; // 索引容量
+
+  @Value("${semantic-cache.ttl-minutes:30}")
+  private long ttlMinutes; // 答案有效期（分钟）
+
+  @Value("${semantic-cache.dimensions:128}")
+  private int dimensions; // 向量维度
+
+  @Value("${semantic-cache.ef-search:32}")
+  private int efSearch; // 查询时的候选集大小
+
+  private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+  private final LongAdder lookups = new LongAdder();
+  private final LongAdder hits = new LongAdder();
+  private final LongAdder factMismatches = new LongAdder(); // 相似度达到阈值但事实签名不同的查询
+  private final LongAdder lookupNanos = new LongAdder();
+  private final AtomicLong maxLookupNanos = new AtomicLong();
+  private final LongAdder resets = new LongAdder();
+
+  private HashingEmbedder embedder;
+  private HnswIndex index;
+  private String[] answers;
+  private String[] signatures;
+  private long[] expiresAt;
+
+  @PostConstruct
+  public void init() {
+    embedder = new HashingEmbedder(dimensions);
+    if (enabled) {
+      allocate();
+    }
+  }
+
+  /**
+   * 查找语义相似问题的缓存答案
+   *
+   * @param question 用户问题
+   * @return 缓存的答案，未命中时返回null
+   */
+  public String lookup(String question) {
+    if (!enabled) {
+      return null;
+    }
+    long start = System.nanoTime();
+    float[] vector = embedder.embed(question);
+    String signature = FactSignature.of(question);
+    String answer = null;
+    float similarity = 0;
+    boolean mismatched = false;
+    lock.readLock().lock();
+    try {
+      for (int id : index.nearest(vector, efSearch, CANDIDATES)) {
+        similarity = index.similarity(vector, id);
+        if (similarity < threshold) {
+          break;
+        }
+        if (!signature.equals(signatures[id])) {
+          mismatched = true;
+        } else if (expiresAt[id] > System.currentTimeMillis()) {
+          answer = answers[id];
+          break;
+        }
+      }
+    } finally {
+      lock.readLock().unlock();
+    }
+    long elapsed = System.nanoTime() - start;
+    lookups.increment();
+    lookupNanos.add(elapsed);
+    maxLookupNanos.accumulateAndGet(elapsed, Math::max);
+    if (answer != null) {
+      hits.increment();
+      log.info("Semantic cache hit, similarity {}", similarity);
+    } else if (mismatched) {
+      factMismatches.increment();
+      log.debug("Semantic cache skipped similar questions with different facts: {}", signature);
+    }
+    return answer;
+  }
+
+  /**
+   * 缓存问题的答案
+   *
+   * @param question 用户问题
+   * @param answer   完整答案
+   */
+  public void put(String question, String answer) {
+    if (!enabled || answer == null || answer.isBlank()) {
+      return;
+    }
+    float[] vector = embedder.embed(question);
+    String signature = FactSignature.of(question);
+    long expires = System.currentTimeMillis() + TimeUnit.MINUTES.toMillis(ttlMinutes);
+    lock.writeLock().lock();
+    try {
+      for (int id : index.nearest(vector, efSearch, CANDIDATES)) {
+        if (index.similarity(vector, id) < threshold) {
+          break;
+        }
+        if (signature.equals(signatures[id])) {
+          // 已有同一含义的问题，直接刷新答案，避免重复节点
+          answers[id] = answer;
+          expiresAt[id] = expires;
+          return;
+        }
+      }
+      if (index.size() >= index.capacity()) {
+        log.info("Semantic cache full ({} entries), rebuilding index", index.size());
+        allocate();
+        resets.increment();
+      }
+      int id = index.add(vector);
+      answers[id] = answer;
+      signatures[id] = signature;
+      expiresAt[id] = expires;
+    } finally {
+      lock.writeLock().unlock();
+    }
+  }
+
+  /**
+   * 缓存统计：条目数、索引内存、查询耗时与命中率
+   *
+   * @return 统计信息
+   */
+  public Map<String, Object> stats() {
+    Map<String, Object> stats = new LinkedHashMap<>();
+    stats.put("enabled", enabled);
+    long lookupCount = lookups.sum();
+    long hitCount = hits.sum();
+    if (enabled) {
+      lock.readLock().lock();
+      try {
+        stats.put("entries", index.size());
+        stats.put("capacity", index.capacity());
+        stats.put("indexMemoryBytes", index.memoryBytes());
+      } finally {
+        lock.readLock().unlock();
+      }
+    }
+    stats.put("lookups", lookupCount);
+    stats.put("hits", hitCount);
+    stats.put("hitRate", lookupCount == 0 ? 0 : (double) hitCount / lookupCount);
+    stats.put("factMismatches", factMismatches.sum());
+    stats.put("avgLookupMicros", lookupCount == 0 ? 0 : lookupNanos.sum() / 1000.0 / lookupCount);
+    stats.put("maxLookupMicros", maxLookupNanos.get() / 1000.0);
+    stats.put("resets", resets.sum());
+    return stats;
+  }
+
+  private void allocate() {
+    index = new HnswIndex(dimensions, maxEntries, 16, 100);
+    answers = new String[maxEntries];
+    signatures = new String[maxEntries];
+    expiresAt = new long[maxEntries];
+  }
+}
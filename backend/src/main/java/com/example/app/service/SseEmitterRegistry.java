@@ -0,0 +1,227 @@
+package com.example.app.service;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * SSE发射器注册表，跟踪所有活跃的流式响应并负责清理
+ *
+ * <p>定期向空闲连接发送心跳注释以发现已断开的客户端；两次数据之间空闲过久或总时长超过截止时间的流
+ * 发送结束提示后关闭，并立即执行完成回调，使共享流取消无人订阅的上游调用。
+ * 巡检线程自身不写出：心跳和结束提示交给写出线程池，上一次写出尚未返回的连接跳过心跳，
+ * 写出阻塞超过写超时的连接视为已断开，直接释放订阅，半开连接不会拖住对其他连接的巡检。
+ */
+@Component
+public class SseEmitterRegistry {
+  private static final Logger log = LoggerFactory.getLogger(SseEmitterRegistry.class);
+
+  private final Set<TrackedSseEmitter> emitters = ConcurrentHashMap.newKeySet();
+  private final LongAdder created = new LongAdder();
+  private final LongAdder completed = new LongAdder(); // 正常结束或客户端主动断开
+  private final LongAdder reapedIdle = new LongAdder();
+  private final LongAdder reapedDeadline = new LongAdder();
+  private final LongAdder reapedDisconnected = new LongAdder(); // 心跳写出失败
+  private final LongAdder reapedStalled = new LongAdder(); // 写出阻塞超过写超时
+  private final LongAdder heartbeats = new LongAdder();
+  private final LongAdder heartbeatsSkipped = new LongAdder(); // 上一次写出尚未返回而跳过的心跳
+  private ScheduledExecutorService reaper;
+  private ExecutorService writer;
+
+  @Value("${sse.heartbeat-interval-ms:15000}")
+  private long heartbeatIntervalMs; // 连接空闲多久后发送一次心跳
+
+  @Value("${sse.idle-timeout-ms:60000}")
+  private long idleTimeoutMs; // 两次数据之间允许的最长间隔
+
+  @Value("${sse.deadline-ms:300000}")
+  private long deadlineMs; // 单个流式响应的最长总时长
+
+  @Value("${sse.reap-interval-ms:5000}")
+  private long reapIntervalMs; // 巡检间隔
+
+  @Value("${sse.write-timeout-ms:10000}")
+  private long writeTimeoutMs; // 单次写出允许阻塞的最长时间，超过视为客户端已断开
+
+  @PostConstruct
+  public void init() {
+    reaper = Executors.newSingleThreadScheduledExecutor(task -> {
+      Thread thread = new Thread(task, "sse-reaper");
+      thread.setDaemon(true);
+      return thread;
+    });
+    // 每个连接同一时刻最多一个心跳在写，阻塞的连接超时后不再派发，线程数受活跃连接数约束
+    AtomicInteger counter = new AtomicInteger();
+    writer = Executors.newCachedThreadPool(task -> {
+      Thread thread = new Thread(task, "sse-writer-" + counter.incrementAndGet());
+      thread.setDaemon(true);
+      return thread;
+    });
+    reaper.scheduleWithFixedDelay(this::sweep, reapIntervalMs, reapIntervalMs, TimeUnit.MILLISECONDS);
+  }
+
+  @PreDestroy
+  public void shutdown() {
+    reaper.shutdownNow();
+    writer.shutdownNow();
+  }
+
+  /**
+   * 创建并登记发射器
+   *
+   * <p>异步请求超时设为截止时间再加两个巡检周期，正常情况下由巡检先行关闭，容器超时只作兜底。
+   *
+   * @param sessionId 会话ID，仅用于日志
+   * @return 已登记的发射器
+   */
+  public TrackedSseEmitter create(String sessionId) {
+    TrackedSseEmitter emitter = new TrackedSseEmitter(sessionId, deadlineMs + 2 * reapIntervalMs);
+    emitter.onCompletion(() -> {
+      if (emitters.remove(emitter)) {
+        completed.increment();
+      }
+    });
+    emitters.add(emitter);
+    created.increment();
+    return emitter;
+  }
+
+  /**
+   * 当前活跃的发射器数量
+   *
+   * @return 发射器数量
+   */
+  public int activeCount() {
+    return emitters.size();
+  }
+
+  /**
+   * 发射器统计
+   *
+   * @return 活跃数、累计创建数、正常结束数与按原因分类的清理数
+   */
+  public Map<String, Object> stats() {
+    long idle = reapedIdle.sum();
+    long deadline = reapedDeadline.sum();
+    long disconnected = reapedDisconnected.sum();
+    Map<String, Object> stats = new LinkedHashMap<>();
+    stats.put("active", emitters.size());
+    stats.put("created", created.sum());
+    stats.put("completed", completed.sum());
+    long stalled = reapedStalled.sum();
+    stats.put("reaped", idle + deadline + disconnected + stalled);
+    stats.put("reapedIdle", idle);
+    stats.put("reapedDeadline", deadline);
+    stats.put("reapedDisconnected", disconnected);
+    stats.put("reapedStalled", stalled);
+    stats.put("heartbeats", heartbeats.sum());
+    stats.put("heartbeatsSkipped", heartbeatsSkipped.sum());
+    return stats;
+  }
+
+  /**
+   * 巡检所有活跃发射器：写出阻塞或超时的关闭，空闲的发送心跳
+   */
+  private void sweep() {
+    long now = System.nanoTime();
+    for (TrackedSseEmitter emitter : emitters) {
+      try {
+        if (emitter.isClosed()) {
+          emitters.remove(emitter);
+        } else if (emitter.isWriting()
+            && now - emitter.writeStartedAt() >= TimeUnit.MILLISECONDS.toNanos(writeTimeoutMs)) {
+          reapedStalled.increment();
+          abandon(emitter);
+        } else if (now - emitter.createdAt() >= TimeUnit.MILLISECONDS.toNanos(deadlineMs)) {
+          reapedDeadline.increment();
+          reap(emitter, "deadline", "响应时间过长，已中止，请重试");
+        } else if (now - emitter.lastDataAt() >= TimeUnit.MILLISECONDS.toNanos(idleTimeoutMs)) {
+          reapedIdle.increment();
+          reap(emitter, "idle", "响应长时间无进展，已中止，请重试");
+        } else if (now - emitter.lastWriteAt() >= TimeUnit.MILLISECONDS.toNanos(heartbeatIntervalMs)) {
+          if (emitter.isWriting()) {
+            heartbeatsSkipped.increment();
+          } else {
+            write(emitter, () -> heartbeat(emitter));
+          }
+        }
+      } catch (RuntimeException error) {
+        log.error("SSE sweep failed for {}", emitter.getSessionId(), error);
+      }
+    }
+  }
+
+  private void heartbeat(TrackedSseEmitter emitter) {
+    try {
+      emitter.heartbeat();
+      heartbeats.increment();
+    } catch (IOException | IllegalStateException error) {
+      if (emitters.remove(emitter)) {
+        reapedDisconnected.increment();
+      }
+      log.info("SSE client {} gone: {}", emitter.getSessionId(), error.getMessage());
+      emitter.fireCompletion();
+      emitter.completeWithError(error);
+    }
+  }
+
+  /**
+   * 立即释放订阅，在写出线程中通知客户端后关闭发射器
+   */
+  private void reap(TrackedSseEmitter emitter, String reason, String message) {
+    log.warn("Reaping SSE stream {} ({})", emitter.getSessionId(), reason);
+    emitters.remove(emitter);
+    emitter.fireCompletion();
+    write(emitter, () -> {
+      try {
+        Map<String, Object> payload = new HashMap<>();
+        payload.put("delta", message); // 内容增量
+        payload.put("finish", true); // 是否结束标记
+        emitter.send(payload);
+        emitter.complete();
+      } catch (IOException | IllegalStateException error) {
+        emitter.completeWithError(error);
+      }
+    });
+  }
+
+  /**
+   * 写出阻塞的连接不再尝试写入，释放订阅后在写出线程中关闭，关闭需要等待阻塞的写出返回
+   */
+  private void abandon(TrackedSseEmitter emitter) {
+    log.warn("SSE stream {} write blocked for over {} ms, dropping", emitter.getSessionId(), writeTimeoutMs);
+    emitters.remove(emitter);
+    emitter.fireCompletion();
+    write(emitter, () -> emitter.completeWithError(new IOException("SSE write timed out")));
+  }
+
+  private void write(TrackedSseEmitter emitter, Runnable task) {
+    try {
+      writer.execute(() -> {
+        try {
+          task.run();
+        } catch (RuntimeException error) {
+          log.error("SSE write failed for {}", emitter.getSessionId(), error);
+        }
+      });
+    } catch (RejectedExecutionException error) {
+      log.debug("SSE writer stopped, skipping {}", emitter.getSessionId());
+    }
+  }
+}
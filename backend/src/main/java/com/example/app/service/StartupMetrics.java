@@ -0,0 +1,68 @@
+package com.example.app.service;
+
+import java.lang.management.ManagementFactory;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+/**
+ * 启动耗时与首个请求延迟统计，用于对比快速启动模式的效果
+ */
+@Component
+public class StartupMetrics {
+  private static final Logger log = LoggerFactory.getLogger(StartupMetrics.class);
+
+  private final AtomicLong readyMillis = new AtomicLong(-1); // JVM启动到应用就绪的毫秒数
+  private final AtomicLong warmupMillis = new AtomicLong(-1); // 预热耗时
+  private final AtomicLong firstAskMillis = new AtomicLong(-1); // 首个问答请求的首字延迟
+
+  @EventListener(ApplicationReadyEvent.class)
+  public void onReady() {
+    long startedAt = ManagementFactory.getRuntimeMXBean().getStartTime();
+    readyMillis.set(System.currentTimeMillis() - startedAt);
+    log.info("Application ready {} ms after JVM start", readyMillis.get());
+  }
+
+  /**
+   * 记录预热耗时
+   *
+   * @param nanos 耗时纳秒数
+   */
+  public void recordWarmup(long nanos) {
+    warmupMillis.set(TimeUnit.NANOSECONDS.toMillis(nanos));
+    log.info("Warm-up finished in {} ms", warmupMillis.get());
+  }
+
+  /**
+   * 记录问答请求的首字延迟，只保留进程内的第一个
+   *
+   * @param nanos 首字延迟纳秒数
+   */
+  public void recordFirstAsk(long nanos) {
+    if (firstAskMillis.compareAndSet(-1, TimeUnit.NANOSECONDS.toMillis(nanos))) {
+      log.info("First ask produced its first chunk in {} ms", firstAskMillis.get());
+    }
+  }
+
+  /**
+   * 启动统计快照
+   *
+   * @return 统计信息，未发生的阶段为-1
+   */
+  public Map<String, Object> stats() {
+    Map<String, Object> stats = new LinkedHashMap<>();
+    stats.put("readyMillis", readyMillis.get());
+    stats.put("warmupMillis", warmupMillis.get());
+    stats.put("firstAskMillis", firstAskMillis.get());
+    stats.put("aotEnabled", Boolean.getBoolean("spring.aot.enabled"));
+    stats.put("cdsArchive", ManagementFactory.getRuntimeMXBean().getInputArguments().stream()
+        .anyMatch(argument -> argument.startsWith("-XX:SharedArchiveFile")));
+    return stats;
+  }
+}
@@ -0,0 +1,43 @@
+package com.example.app.service;
+
+/**
+ * 本地token估算器，上游未返回usage时用于近似计数
+ *
+ * <p>按字符类别粗略估算：中日韩字符约0.6个token，连续的字母数字约每4个字符1个token，
+ * 其余标点符号各计1个token，空白不计。
+ */
+public final class TokenEstimator {
+
+  private TokenEstimator() {
+  }
+
+  /**
+   * 估算文本的token数量
+   *
+   * @param text 文本
+   * @return 估算的token数量
+   */
+  public static long estimate(CharSequence text) {
+    if (text == null || text.length() == 0) {
+      return 0;
+    }
+    double tokens = 0;
+    int wordChars = 0;
+    for (int i = 0; i < text.length(); i++) {
+      char c = text.charAt(i);
+      if (Character.isLetterOrDigit(c) && c < 0x2E80) {
+        wordChars++;
+        continue;
+      }
+      tokens += Math.ceil(wordChars / 4.0);
+      wordChars = 0;
+      if (c >= 0x2E80) {
+        tokens += 0.6; // 中日韩字符及全角符号
+      } else if (!Character.isWhitespace(c)) {
+        tokens += 1;
+      }
+    }
+    tokens += Math.ceil(wordChars / 4.0);
+    return (long) Math.ceil(tokens);
+  }
+}
@@ -0,0 +1,53 @@
+package com.example.app.service;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * 标记可供AI模型调用的工具方法，由 {@link ToolRegistry} 在启动时发现并注册
+ *
+ * <p>方法参数需使用 {@link ToolParam} 标注，返回值转换为字符串作为工具结果。
+ */
+@Documented
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+public @interface Tool {
+
+  /**
+   * 工具名称，即模型调用时使用的函数名
+   */
+  String name();
+
+  /**
+   * 工具描述，提供给模型判断何时调用
+   */
+  String description();
+
+  /**
+   * 最大并发执行数，0表示不限制
+   */
+  int maxConcurrency() default 0;
+
+  /**
+   * 执行超时毫秒数，0表示不设超时并在调用线程中直接执行
+   */
+  long timeoutMs() default 0;
+
+  /**
+   * 结果是否可按参数缓存，仅适用于无副作用的工具
+   */
+  boolean cacheable() default false;
+
+  /**
+   * 缓存结果的有效秒数
+   */
+  long cacheTtlSeconds() default 300;
+
+  /**
+   * 是否把缓存结果写入集群共享缓存，适合耗时远大于一次节点间RPC的工具
+   */
+  boolean sharedCache() default false;
+}
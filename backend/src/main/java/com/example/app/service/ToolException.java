@@ -0,0 +1,19 @@
+package com.example.app.service;
+
+/**
+ * 工具未能给出有效结果，异常信息作为工具结果原样交给模型
+ *
+ * <p>与直接返回提示文本不同，{@link ToolRegistry} 不会缓存这类结果，下次调用会重新执行。
+ */
+public class ToolException extends RuntimeException {
+  private static final long serialVersionUID = 1L;
+
+  /**
+   * 构造函数
+   *
+   * @param message 交给模型的提示文本
+   */
+  public ToolException(String message) {
+    super(message);
+  }
+}
@@ -0,0 +1,31 @@
+package com.example.app.service;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * 工具方法参数说明，用于生成JSON Schema并按名称绑定模型传入的参数
+ */
+@Documented
+@Target(ElementType.PARAMETER)
+@Retention(RetentionPolicy.RUNTIME)
+public @interface ToolParam {
+
+  /**
+   * 参数名称
+   */
+  String name();
+
+  /**
+   * 参数描述
+   */
+  String description() default "";
+
+  /**
+   * 是否必填
+   */
+  boolean required() default true;
+}
@@ -0,0 +1,543 @@
+package com.example.app.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.reflect.Array;
+import java.lang.reflect.Method;
+import java.lang.reflect.Parameter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.aop.support.AopUtils;
+import org.springframework.context.ApplicationContext;
+import org.springframework.core.MethodIntrospector;
+import org.springframework.core.annotation.AnnotationUtils;
+import org.springframework.stereotype.Component;
+import org.springframework.util.ClassUtils;
+import org.springframework.util.ReflectionUtils;
+
+/**
+ * 工具注册表，启动时发现所有 {@link Tool} 标注的方法，预先生成JSON Schema和方法句柄
+ *
+ * <p>请求路径上只做一次哈希查找、参数类型转换和句柄调用，不再拼装工具定义或按名称逐个比较。
+ * 每个工具按注解声明独立限制并发、超时与结果缓存。
+ */
+@Component
+public class ToolRegistry {
+  private static final Logger log = LoggerFactory.getLogger(ToolRegistry.class);
+  private static final int MAX_CACHE_ENTRIES = 256; // 每个工具最多缓存的结果数
+
+  private final ApplicationContext context;
+  private final ObjectMapper objectMapper;
+  private final ClusterCache clusterCache;
+  private final Map<String, ToolHandle> tools = new HashMap<>(); // 仅在初始化时写入
+  private final ExecutorService executor;
+  private List<Map<String, Object>> schemas = List.of();
+
+  /**
+   * 构造函数
+   *
+   * @param context      应用上下文，用于查找工具Bean
+   * @param objectMapper Jackson对象映射器，用于转换复杂类型参数
+   * @param clusterCache 集群共享缓存，声明了sharedCache的工具在本地未命中时查询
+   */
+  public ToolRegistry(ApplicationContext context, ObjectMapper objectMapper, ClusterCache clusterCache) {
+    this.context = context;
+    this.objectMapper = objectMapper;
+    this.clusterCache = clusterCache;
+    AtomicInteger counter = new AtomicInteger();
+    this.executor = Executors.newCachedThreadPool(task -> {
+      Thread thread = new Thread(task, "tool-exec-" + counter.incrementAndGet());
+      thread.setDaemon(true);
+      return thread;
+    });
+  }
+
+  /**
+   * 扫描Bean定义的类型查找工具方法，只实例化确实声明了工具的Bean，懒加载模式下同样生效
+   */
+  @PostConstruct
+  public void init() {
+    for (String beanName : context.getBeanDefinitionNames()) {
+      Class<?> type = context.getType(beanName, false);
+      if (type == null || !AnnotationUtils.isCandidateClass(type, Tool.class)) {
+        continue;
+      }
+      Map<Method, Tool> methods = MethodIntrospector.selectMethods(ClassUtils.getUserClass(type),
+          (MethodIntrospector.MetadataLookup<Tool>) method -> method.getAnnotation(Tool.class));
+      if (methods.isEmpty()) {
+        continue;
+      }
+      Object bean = context.getBean(beanName);
+      methods.forEach((method, tool) -> register(bean, method, tool));
+    }
+    schemas = tools.values().stream()
+        .sorted(Comparator.comparing(handle -> handle.name))
+        .map(handle -> handle.schema)
+        .toList();
+    log.info("Registered {} tools: {}", tools.size(), tools.keySet());
+  }
+
+  @PreDestroy
+  public void shutdown() {
+    executor.shutdownNow();
+  }
+
+  /**
+   * 所有工具的定义，按名称排序，初始化后不再变化，调用方不得修改
+   *
+   * @return 工具定义列表
+   */
+  public List<Map<String, Object>> schemas() {
+    return schemas;
+  }
+
+  /**
+   * 执行工具调用
+   *
+   * @param name 工具名称
+   * @param args 模型传入的参数
+   * @return 工具执行结果，失败时返回可直接交给模型的提示文本，失败结果不会被缓存
+   */
+  public String execute(String name, Map<String, Object> args) {
+    return invoke(name, args, false).text();
+  }
+
+  /**
+   * 预执行工具调用：并发已满时立即放弃而不是等待许可，避免预测占用真实调用的名额
+   *
+   * <p>中断执行预测的线程会中断工具线程，工具据此取消进行中的网络请求。
+   *
+   * @param name 工具名称
+   * @param args 预测的参数
+   * @return 执行结果及是否成功，失败的结果不应交给模型
+   */
+  public Outcome speculate(String name, Map<String, Object> args) {
+    return invoke(name, args, true);
+  }
+
+  private Outcome invoke(String name, Map<String, Object> args, boolean speculative) {
+    ToolHandle tool = tools.get(name);
+    if (tool == null) {
+      log.warn("未知工具: {}", name);
+      return Outcome.failure("未知工具");
+    }
+    log.info("{}工具调用: {}, 参数: {}", speculative ? "预执行" : "执行", name, args);
+    return tool.execute(args, speculative);
+  }
+
+  /**
+   * 各工具的调用统计
+   *
+   * @return 按工具名称排序的统计信息
+   */
+  public Map<String, Map<String, Object>> stats() {
+    Map<String, Map<String, Object>> stats = new TreeMap<>();
+    tools.forEach((name, tool) -> stats.put(name, tool.stats()));
+    return stats;
+  }
+
+  private void register(Object bean, Method method, Tool tool) {
+    if (tools.containsKey(tool.name())) {
+      throw new IllegalStateException("工具名称重复: " + tool.name());
+    }
+    Method invocable = AopUtils.selectInvocableMethod(method, bean.getClass());
+    ReflectionUtils.makeAccessible(invocable);
+    Parameter[] parameters = invocable.getParameters();
+    ParamBinding[] bindings = new ParamBinding[parameters.length];
+    for (int i = 0; i < parameters.length; i++) {
+      ToolParam param = parameters[i].getAnnotation(ToolParam.class);
+      if (param == null) {
+        throw new IllegalStateException("工具参数缺少@ToolParam注解: " + method);
+      }
+      bindings[i] = new ParamBinding(param, parameters[i].getType(), converter(parameters[i].getType()));
+    }
+    MethodHandle handle;
+    try {
+      handle = MethodHandles.lookup().unreflect(invocable).bindTo(bean);
+    } catch (IllegalAccessException error) {
+      throw new IllegalStateException("无法访问工具方法: " + method, error);
+    }
+    // 统一为 (Object[]) -> Object，调用时可直接invokeExact
+    handle = handle.asType(handle.type().generic()).asSpreader(Object[].class, parameters.length);
+    tools.put(tool.name(), new ToolHandle(tool, bindings, handle, schema(tool, bindings)));
+  }
+
+  private static Map<String, Object> schema(Tool tool, ParamBinding[] bindings) {
+    Map<String, Object> properties = new LinkedHashMap<>();
+    List<String> required = new ArrayList<>();
+    for (ParamBinding binding : bindings) {
+      Map<String, Object> property = new LinkedHashMap<>();
+      property.put("type", jsonType(binding.type));
+      if (!binding.description.isEmpty()) {
+        property.put("description", binding.description);
+      }
+      properties.put(binding.name, property);
+      if (binding.required) {
+        required.add(binding.name);
+      }
+    }
+    Map<String, Object> parameters = new LinkedHashMap<>();
+    parameters.put("type", "object");
+    parameters.put("properties", properties);
+    parameters.put("required", required);
+
+    Map<String, Object> function = new LinkedHashMap<>();
+    function.put("name", tool.name());
+    function.put("description", tool.description());
+    function.put("parameters", parameters);
+
+    Map<String, Object> schema = new LinkedHashMap<>();
+    schema.put("type", "function");
+    schema.put("function", function);
+    return schema;
+  }
+
+  private static String jsonType(Class<?> type) {
+    Class<?> boxed = ClassUtils.resolvePrimitiveIfNecessary(type);
+    if (boxed == Integer.class || boxed == Long.class || boxed == Short.class) {
+      return "integer";
+    }
+    if (Number.class.isAssignableFrom(boxed)) {
+      return "number";
+    }
+    if (boxed == Boolean.class) {
+      return "boolean";
+    }
+    if (boxed.isArray() || Iterable.class.isAssignableFrom(boxed)) {
+      return "array";
+    }
+    if (CharSequence.class.isAssignableFrom(boxed) || boxed.isEnum()) {
+      return "string";
+    }
+    return "object";
+  }
+
+  /**
+   * 按参数类型预先选好转换函数。模型传入的数字可能是字符串（如DSML格式），统一容错
+   */
+  private Function<Object, Object> converter(Class<?> type) {
+    Class<?> boxed = ClassUtils.resolvePrimitiveIfNecessary(type);
+    if (boxed == String.class) {
+      return String::valueOf;
+    }
+    if (boxed == Integer.class) {
+      return raw -> raw instanceof Number number ? number.intValue() : Integer.parseInt(raw.toString().trim());
+    }
+    if (boxed == Long.class) {
+      return raw -> raw instanceof Number number ? number.longValue() : Long.parseLong(raw.toString().trim());
+    }
+    if (boxed == Double.class) {
+      return raw -> raw instanceof Number number ? number.doubleValue() : Double.parseDouble(raw.toString().trim());
+    }
+    if (boxed == Boolean.class) {
+      return raw -> raw instanceof Boolean flag ? flag : Boolean.parseBoolean(raw.toString().trim());
+    }
+    return raw -> objectMapper.convertValue(raw, type);
+  }
+
+  /**
+   * 工具参数的绑定信息
+   */
+  private static class ParamBinding {
+    private final String name;
+    private final String description;
+    private final boolean required;
+    private final Class<?> type;
+    private final Object missing; // 可选参数缺失时的取值，基本类型为零值
+    private final Function<Object, Object> converter;
+
+    ParamBinding(ToolParam param, Class<?> type, Function<Object, Object> converter) {
+      this.name = param.name();
+      this.description = param.description();
+      this.required = param.required();
+      this.type = type;
+      this.missing = type.isPrimitive() ? Array.get(Array.newInstance(type, 1), 0) : null;
+      this.converter = converter;
+    }
+  }
+
+  /**
+   * 一次工具调用的结果
+   */
+  public static final class Outcome {
+    private final String text;
+    private final boolean success;
+
+    private Outcome(String text, boolean success) {
+      this.text = text;
+      this.success = success;
+    }
+
+    static Outcome success(String text) {
+      return new Outcome(text, true);
+    }
+
+    static Outcome failure(String text) {
+      return new Outcome(text, false);
+    }
+
+    /**
+     * 交给模型的结果文本，失败时为提示文本
+     */
+    public String text() {
+      return text;
+    }
+
+    /**
+     * 工具是否正常给出了结果
+     */
+    public boolean success() {
+      return success;
+    }
+  }
+
+  /**
+   * 缓存的工具结果
+   */
+  private static class CachedResult {
+    private final String value;
+    private final long expiresAt;
+
+    CachedResult(String value, long expiresAt) {
+      this.value = value;
+      this.expiresAt = expiresAt;
+    }
+  }
+
+  /**
+   * 已注册的工具：方法句柄、参数绑定、限流与缓存
+   */
+  private class ToolHandle {
+    private final String name;
+    private final ParamBinding[] bindings;
+    private final MethodHandle handle;
+    private final Map<String, Object> schema;
+    private final Semaphore permits;
+    private final int maxConcurrency;
+    private final long timeoutMs;
+    private final long cacheTtlMillis;
+    private final Map<List<Object>, CachedResult> cache;
+    private final boolean sharedCache;
+    private final LongAdder calls = new LongAdder();
+    private final LongAdder cacheHits = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder timeouts = new LongAdder();
+    private final LongAdder failures = new LongAdder();
+    private final LongAdder executed = new LongAdder(); // 实际执行次数，不含缓存命中与被拒绝的调用
+    private final LongAdder totalNanos = new LongAdder(); // 实际执行的总耗时
+
+    ToolHandle(Tool tool, ParamBinding[] bindings, MethodHandle handle, Map<String, Object> schema) {
+      this.name = tool.name();
+      this.bindings = bindings;
+      this.handle = handle;
+      this.schema = schema;
+      this.permits = tool.maxConcurrency() > 0 ? new Semaphore(tool.maxConcurrency()) : null;
+      this.maxConcurrency = tool.maxConcurrency();
+      this.timeoutMs = tool.timeoutMs();
+      this.cacheTtlMillis = TimeUnit.SECONDS.toMillis(tool.cacheTtlSeconds());
+      this.cache = tool.cacheable() ? new ConcurrentHashMap<>() : null;
+      this.sharedCache = tool.cacheable() && tool.sharedCache();
+    }
+
+    Outcome execute(Map<String, Object> args, boolean speculative) {
+      calls.increment();
+      Object[] values;
+      try {
+        values = bind(args);
+      } catch (RuntimeException error) {
+        failures.increment();
+        log.warn("Tool {} arguments invalid: {}", name, error.getMessage());
+        return Outcome.failure("工具参数无效: " + error.getMessage());
+      }
+
+      List<Object> cacheKey = null;
+      if (cache != null) {
+        cacheKey = Arrays.asList(values);
+        CachedResult cached = cache.get(cacheKey);
+        if (cached != null && cached.expiresAt > System.currentTimeMillis()) {
+          cacheHits.increment();
+          return Outcome.success(cached.value);
+        }
+        String shared = sharedCache ? clusterCache.get(sharedKey(cacheKey)) : null;
+        if (shared != null) {
+          cacheHits.increment();
+          putCache(cacheKey, shared);
+          return Outcome.success(shared);
+        }
+      }
+
+      long start = System.nanoTime();
+      boolean acquired = false;
+      try {
+        acquired = acquire(speculative);
+        if (!acquired) {
+          rejected.increment();
+          log.warn("Tool {} rejected, concurrency limit reached", name);
+          return Outcome.failure("工具繁忙，请稍后再试");
+        }
+        executed.increment();
+        String result = String.valueOf(timeoutMs > 0 ? invokeWithTimeout(values) : invokeAndRelease(values));
+        if (cacheKey != null) {
+          putCache(cacheKey, result);
+          if (sharedCache) {
+            clusterCache.put(sharedKey(cacheKey), result, cacheTtlMillis);
+          }
+        }
+        return Outcome.success(result);
+      } catch (TimeoutException error) {
+        timeouts.increment();
+        log.warn("Tool {} timed out after {} ms", name, timeoutMs);
+        return Outcome.failure("工具执行超时");
+      } catch (InterruptedException error) {
+        Thread.currentThread().interrupt();
+        failures.increment();
+        return Outcome.failure("工具执行被中断");
+      } catch (Exception error) {
+        failures.increment();
+        Throwable cause = error instanceof ExecutionException && error.getCause() != null ? error.getCause() : error;
+        if (cause instanceof ToolException) {
+          log.info("Tool {} returned no result for {}: {}", name, args, cause.getMessage());
+          return Outcome.failure(cause.getMessage());
+        }
+        log.error("Tool {} failed for {}: {}", name, args, cause.getMessage());
+        return Outcome.failure("工具执行失败");
+      } finally {
+        if (acquired) {
+          totalNanos.add(System.nanoTime() - start);
+        }
+      }
+    }
+
+    private Object[] bind(Map<String, Object> args) {
+      Object[] values = new Object[bindings.length];
+      for (int i = 0; i < bindings.length; i++) {
+        ParamBinding binding = bindings[i];
+        Object raw = args == null ? null : args.get(binding.name);
+        if (raw == null) {
+          if (binding.required) {
+            throw new IllegalArgumentException("缺少参数 " + binding.name);
+          }
+          values[i] = binding.missing;
+        } else {
+          values[i] = binding.converter.apply(raw);
+        }
+      }
+      return values;
+    }
+
+    /**
+     * 获取并发许可，预执行只尝试一次，设置了超时的工具最多等待超时时长
+     */
+    private boolean acquire(boolean speculative) throws InterruptedException {
+      if (permits == null) {
+        return true;
+      }
+      if (speculative) {
+        return permits.tryAcquire();
+      }
+      if (timeoutMs > 0) {
+        return permits.tryAcquire(timeoutMs, TimeUnit.MILLISECONDS);
+      }
+      permits.acquire();
+      return true;
+    }
+
+    /**
+     * 在工具线程池中执行，超时从取得许可后开始计算。超时后调用方立即返回，许可在任务真正结束时才释放，
+     * 避免超出并发上限；任务还没开始就被取消时由调用方释放
+     */
+    private Object invokeWithTimeout(Object[] values) throws Exception {
+      AtomicBoolean started = new AtomicBoolean(); // 任务与调用方谁先置位，许可就由谁释放
+      Future<Object> future;
+      try {
+        future = executor.submit(() -> started.compareAndSet(false, true) ? invokeAndRelease(values) : null);
+      } catch (RejectedExecutionException error) {
+        release();
+        throw error;
+      }
+      try {
+        return future.get(timeoutMs, TimeUnit.MILLISECONDS);
+      } catch (TimeoutException | InterruptedException error) {
+        future.cancel(true);
+        if (started.compareAndSet(false, true)) {
+          release();
+        }
+        throw error;
+      }
+    }
+
+    private Object invokeAndRelease(Object[] values) throws Exception {
+      try {
+        return (Object) handle.invokeExact(values);
+      } catch (Exception | Error error) {
+        throw error;
+      } catch (Throwable error) {
+        throw new IllegalStateException(error);
+      } finally {
+        release();
+      }
+    }
+
+    private void release() {
+      if (permits != null) {
+        permits.release();
+      }
+    }
+
+    private String sharedKey(List<Object> key) {
+      return "tool:" + name + ":" + key;
+    }
+
+    private void putCache(List<Object> key, String result) {
+      long now = System.currentTimeMillis();
+      if (cache.size() >= MAX_CACHE_ENTRIES) {
+        cache.values().removeIf(cached -> cached.expiresAt <= now);
+        if (cache.size() >= MAX_CACHE_ENTRIES) {
+          cache.clear();
+        }
+      }
+      cache.put(key, new CachedResult(result, now + cacheTtlMillis));
+    }
+
+    Map<String, Object> stats() {
+      long executions = executed.sum();
+      Map<String, Object> stats = new LinkedHashMap<>();
+      stats.put("calls", calls.sum());
+      stats.put("executions", executions);
+      stats.put("cacheHits", cacheHits.sum());
+      stats.put("rejected", rejected.sum());
+      stats.put("timeouts", timeouts.sum());
+      stats.put("failures", failures.sum());
+      stats.put("avgMillis", executions > 0 ? totalNanos.sum() / 1_000_000.0 / executions : 0);
+      stats.put("maxConcurrency", maxConcurrency);
+      stats.put("running", permits == null ? -1 : maxConcurrency - permits.availablePermits());
+      stats.put("timeoutMs", timeoutMs);
+      stats.put("cacheEntries", cache == null ? -1 : cache.size());
+      return stats;
+    }
+  }
+}
@@ -0,0 +1,338 @@
+package com.example.app.service;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+/**
+ * 工具结果压缩：在工具结果写入后续模型请求前控制其token数量
+ *
+ * <p>先按行、再按句切分各工具结果，跨结果去掉重复或高度相似的句子；相似的句子只有在数字、拉丁字母词、专名
+ * 和实义汉字完全一致时才视为重复，“售价7999元”与“售价8999元”、“杭州……”与“苏州……”各自保留。超出单个工具或整轮的token预算时，
+ * 按与用户问题的相似度挑选句子，保留原有顺序。编号标题、链接和短行原样保留，便于模型引用来源。
+ * 没有删除任何内容的结果原样返回。
+ */
+@Service
+public class ToolResultCompactor {
+  private static final Logger log = LoggerFactory.getLogger(ToolResultCompactor.class);
+  private static final Pattern PINNED = Pattern.compile("^(?:\\d+\\.\\s|链接[:：]|https?://)");
+  private static final Pattern LABEL = Pattern.compile("^[^\\s:：]{1,6}[:：]");
+  private static final Pattern SENTENCE_BREAK = Pattern.compile("(?<=[。！？!?；;])|(?<=\\.)(?=\\s)");
+  private static final Pattern NOISE = Pattern.compile("[\\p{P}\\p{S}\\s]+");
+  private static final int SHORT_LINE = 40; // 不超过该长度的行不拆分、不删除
+  private static final int NEAR_DUPLICATE_MIN_CHARS = 12; // 更短的句子只做完全相同的去重
+
+  private final HashingEmbedder embedder = new HashingEmbedder(256);
+  private final LongAdder turns = new LongAdder();
+  private final LongAdder compactedTurns = new LongAdder();
+  private final LongAdder bytesRemoved = new LongAdder();
+  private final LongAdder tokensRemoved = new LongAdder();
+  private final LongAdder duplicatesRemoved = new LongAdder();
+  private final LongAdder sentencesDropped = new LongAdder(); // 因超出预算被删去的句子
+
+  @Value("${compaction.enabled:true}")
+  private boolean enabled; // 是否压缩工具结果
+
+  @Value("${compaction.tool-token-budget:1200}")
+  private int toolTokenBudget; // 单个工具结果的token上限
+
+  @Value("${compaction.turn-token-budget:2400}")
+  private int turnTokenBudget; // 一轮所有工具结果的token上限
+
+  @Value("${compaction.duplicate-similarity:0.9}")
+  private double duplicateSimilarity; // 视为重复句子的最低余弦相似度
+
+  /**
+   * 压缩一轮的全部工具结果
+   *
+   * @param question 用户问题，用于句子相关性排序
+   * @param results  各工具结果，顺序与工具调用一致
+   * @return 压缩后的结果，数量与顺序不变
+   */
+  public List<String> compact(String question, List<String> results) {
+    turns.increment();
+    if (!enabled || results.isEmpty()) {
+      return results;
+    }
+    float[] questionVector = embedder.embed(question);
+    List<List<Line>> parsed = new ArrayList<>();
+    for (String result : results) {
+      parsed.add(parse(result, questionVector));
+    }
+    int duplicates = deduplicate(parsed);
+
+    long[] tokens = new long[parsed.size()];
+    long wanted = 0;
+    for (int i = 0; i < parsed.size(); i++) {
+      tokens[i] = keptTokens(parsed.get(i));
+      wanted += Math.min(tokens[i], toolTokenBudget);
+    }
+    // 各工具先按单独预算截断，合计仍超出整轮预算时按比例分配
+    double scale = wanted > turnTokenBudget ? (double) turnTokenBudget / wanted : 1;
+    int dropped = 0;
+    for (int i = 0; i < parsed.size(); i++) {
+      long budget = (long) (Math.min(tokens[i], toolTokenBudget) * scale);
+      if (tokens[i] > budget) {
+        dropped += select(parsed.get(i), budget);
+      }
+    }
+
+    List<String> compacted = new ArrayList<>(results.size());
+    long bytesBefore = 0;
+    long bytesAfter = 0;
+    long tokensBefore = 0;
+    long tokensAfter = 0;
+    for (int i = 0; i < results.size(); i++) {
+      String original = results.get(i);
+      String text = changed(parsed.get(i)) ? render(parsed.get(i)) : original;
+      compacted.add(text);
+      bytesBefore += original.getBytes(StandardCharsets.UTF_8).length;
+      bytesAfter += text.getBytes(StandardCharsets.UTF_8).length;
+      tokensBefore += TokenEstimator.estimate(original);
+      tokensAfter += TokenEstimator.estimate(text);
+    }
+    if (duplicates + dropped > 0) {
+      compactedTurns.increment();
+      bytesRemoved.add(bytesBefore - bytesAfter);
+      tokensRemoved.add(tokensBefore - tokensAfter);
+      duplicatesRemoved.add(duplicates);
+      sentencesDropped.add(dropped);
+      log.info("Compacted {} tool results: {} -> {} bytes, {} -> {} tokens, {} duplicates, {} sentences over budget",
+          results.size(), bytesBefore, bytesAfter, tokensBefore, tokensAfter, duplicates, dropped);
+    }
+    return compacted;
+  }
+
+  /**
+   * 压缩统计
+   *
+   * @return 处理轮数、实际压缩的轮数以及累计删去的字节、token与句子数
+   */
+  public Map<String, Object> stats() {
+    long compacted = compactedTurns.sum();
+    Map<String, Object> stats = new LinkedHashMap<>();
+    stats.put("turns", turns.sum());
+    stats.put("compactedTurns", compacted);
+    stats.put("bytesRemoved", bytesRemoved.sum());
+    stats.put("tokensRemoved", tokensRemoved.sum());
+    stats.put("avgTokensRemoved", compacted > 0 ? tokensRemoved.sum() / compacted : 0);
+    stats.put("duplicatesRemoved", duplicatesRemoved.sum());
+    stats.put("sentencesDropped", sentencesDropped.sum());
+    return stats;
+  }
+
+  private List<Line> parse(String result, float[] questionVector) {
+    List<Line> lines = new ArrayList<>();
+    String[] rawLines = result.split("\n", -1);
+    for (String raw : rawLines) {
+      Line line = new Line(raw);
+      String trimmed = raw.trim();
+      if (trimmed.length() <= SHORT_LINE || PINNED.matcher(trimmed).find()) {
+        lines.add(line);
+        continue;
+      }
+      Matcher label = LABEL.matcher(trimmed);
+      String body = trimmed;
+      if (label.find()) {
+        line.label = label.group();
+        body = trimmed.substring(label.end());
+      }
+      String[] parts = SENTENCE_BREAK.split(body);
+      for (int i = 0; i < parts.length; i++) {
+        if (parts[i].isBlank()) {
+          continue;
+        }
+        Sentence sentence = new Sentence(parts[i]);
+        sentence.vector = embedder.embed(parts[i]);
+        // 相关性为主，靠前的句子略微优先
+        sentence.score = dot(questionVector, sentence.vector) + 0.05 / (1 + i);
+        line.sentences.add(sentence);
+      }
+      lines.add(line);
+    }
+    return lines;
+  }
+
+  /**
+   * 按出现顺序去重：完全相同（忽略标点空白）或与已保留句子高度相似的句子删去，两种情况都要求事实签名相同
+   *
+   * @return 删去的句子数
+   */
+  private int deduplicate(List<List<Line>> parsed) {
+    Set<String> seen = new HashSet<>();
+    List<Sentence> kept = new ArrayList<>();
+    int removed = 0;
+    for (List<Line> lines : parsed) {
+      for (Line line : lines) {
+        for (Sentence sentence : line.sentences) {
+          String key = NOISE.matcher(sentence.text.toLowerCase(Locale.ROOT)).replaceAll("");
+          // 去掉标点后“3.5万”与“35万”相同，签名一并作为键
+          boolean duplicate = key.isEmpty() || !seen.add(key + '\n' + sentence.signature);
+          if (!duplicate && key.length() >= NEAR_DUPLICATE_MIN_CHARS) {
+            for (Sentence other : kept) {
+              if (sentence.signature.equals(other.signature)
+                  && dot(sentence.vector, other.vector) >= duplicateSimilarity) {
+                duplicate = true;
+                break;
+              }
+            }
+          }
+          if (duplicate) {
+            sentence.kept = false;
+            removed++;
+          } else if (key.length() >= NEAR_DUPLICATE_MIN_CHARS) {
+            kept.add(sentence);
+          }
+        }
+      }
+    }
+    return removed;
+  }
+
+  /**
+   * 在预算内按相关性保留句子，固定保留的行先占用预算
+   *
+   * @return 删去的句子数
+   */
+  private static int select(List<Line> lines, long budget) {
+    long used = 0;
+    List<Sentence> candidates = new ArrayList<>();
+    for (Line line : lines) {
+      if (line.sentences.isEmpty()) {
+        used += TokenEstimator.estimate(line.raw);
+        continue;
+      }
+      if (line.label != null) {
+        used += TokenEstimator.estimate(line.label);
+      }
+      for (Sentence sentence : line.sentences) {
+        if (sentence.kept) {
+          candidates.add(sentence);
+        }
+      }
+    }
+    candidates.sort(Comparator.comparingDouble((Sentence sentence) -> sentence.score).reversed());
+    int dropped = 0;
+    for (Sentence sentence : candidates) {
+      if (used + sentence.tokens <= budget) {
+        used += sentence.tokens;
+      } else {
+        sentence.kept = false;
+        dropped++;
+      }
+    }
+    return dropped;
+  }
+
+  private static long keptTokens(List<Line> lines) {
+    long tokens = 0;
+    for (Line line : lines) {
+      if (line.sentences.isEmpty()) {
+        tokens += TokenEstimator.estimate(line.raw);
+        continue;
+      }
+      if (line.label != null) {
+        tokens += TokenEstimator.estimate(line.label);
+      }
+      for (Sentence sentence : line.sentences) {
+        if (sentence.kept) {
+          tokens += sentence.tokens;
+        }
+      }
+    }
+    return tokens;
+  }
+
+  private static boolean changed(List<Line> lines) {
+    for (Line line : lines) {
+      for (Sentence sentence : line.sentences) {
+        if (!sentence.kept) {
+          return true;
+        }
+      }
+    }
+    return false;
+  }
+
+  /**
+   * 按原顺序拼回文本，句子全部删去的行连同标签一起去掉
+   */
+  private static String render(List<Line> lines) {
+    StringBuilder text = new StringBuilder();
+    for (Line line : lines) {
+      String rendered;
+      if (line.sentences.isEmpty()) {
+        rendered = line.raw;
+      } else {
+        StringBuilder body = new StringBuilder();
+        for (Sentence sentence : line.sentences) {
+          if (sentence.kept) {
+            body.append(sentence.text);
+          }
+        }
+        if (body.toString().isBlank()) {
+          continue;
+        }
+        rendered = (line.label != null ? line.label : "") + body.toString().trim();
+      }
+      if (!text.isEmpty()) {
+        text.append('\n');
+      }
+      text.append(rendered);
+    }
+    // 删去整行后可能留下连续的空行
+    return text.toString().replaceAll("\n{3,}", "\n\n").strip();
+  }
+
+  private static double dot(float[] a, float[] b) {
+    double sum = 0;
+    for (int i = 0; i < a.length; i++) {
+      sum += a[i] * b[i];
+    }
+    return sum;
+  }
+
+  /**
+   * 工具结果中的一行，不可拆分的行没有句子
+   */
+  private static class Line {
+    private final String raw;
+    private final List<Sentence> sentences = new ArrayList<>();
+    private String label; // 行首的“摘要：”“正文：”等标签
+
+    Line(String raw) {
+      this.raw = raw;
+    }
+  }
+
+  /**
+   * 可删除的句子
+   */
+  private static class Sentence {
+    private final String text;
+    private final long tokens;
+    private final String signature; // 事实签名，不同的句子即使向量相似也不算重复
+    private float[] vector;
+    private double score;
+    private boolean kept = true;
+
+    Sentence(String text) {
+      this.text = text;
+      this.tokens = TokenEstimator.estimate(text);
+      this.signature = FactSignature.of(text);
+    }
+  }
+}
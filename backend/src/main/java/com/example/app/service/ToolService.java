@@ -1,20 +1,12 @@
 package com.example.app.service;
 
-import com.fasterxml.jackson.databind.JsonNode;
-import com.fasterxml.jackson.databind.ObjectMapper;
+import com.example.app.model.SearchResult;
 import java.io.IOException;
-import java.net.URLEncoder;
-import java.nio.charset.StandardCharsets;
-import java.util.ArrayList;
 import java.util.List;
 import net.objecthunter.exp4j.Expression;
 import net.objecthunter.exp4j.ExpressionBuilder;
-import okhttp3.OkHttpClient;
-import okhttp3.Request;
-import okhttp3.Response;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
 /**
@@ -24,82 +16,78 @@ import org.springframework.stereotype.Service;
 public class ToolService {
   private static final Logger log = LoggerFactory.getLogger(ToolService.class);
 
-  private final OkHttpClient okHttpClient;
-  private final ObjectMapper objectMapper;
-
-  @Value("${search.endpoint:https://api.bing.microsoft.com/v7.0/search}")
-  private String searchEndpoint; // 搜索引擎API端点
-
-  @Value("${search.api-key:}")
-  private String searchApiKey; // 搜索引擎API密钥
+  private final WebSearchService webSearchService;
 
   /**
    * 构造函数
    * 
-   * @param okHttpClient OkHttp客户端实例
-   * @param objectMapper Jackson对象映射器
+   * @param webSearchService 网页搜索服务
    */
-  public ToolService(OkHttpClient okHttpClient, ObjectMapper objectMapper) {
-    this.okHttpClient = okHttpClient;
-    this.objectMapper = objectMapper;
+  public ToolService(WebSearchService webSearchService) {
+    this.webSearchService = webSearchService;
   }
 
   /**
-   * 使用百度搜索引擎搜索网页
+   * 使用搜索引擎搜索网页，返回前几条结果的标题、链接和摘要
+   * 
+   * <p>搜索失败或没有结果时抛出异常而不是返回提示文本，避免这类结果被工具注册表缓存。
    * 
    * @param query 搜索关键词
-   * @return 搜索结果摘要，多个结果用换行分隔
+   * @return 搜索结果文本，多个结果用空行分隔
+   * @throws IOException 搜索服务异常
+   * @throws ToolException 没有找到相关结果
    */
-  public String searchWeb(String query) {
-    try {
-      // URL编码搜索关键词
-      String encoded = URLEncoder.encode(query, StandardCharsets.UTF_8);
-
-      // 构建百度搜索API URL，返回前3条结果
-      // 百度搜索API格式示例：https://www.baidu.com/s?wd=关键词&rn=3
-      String url = String.format("%s?wd=%s&rn=3", searchEndpoint, encoded);
-      // 构建HTTP请求，添加User-Agent头避免反爬虫
-      Request request = new Request.Builder()
-          .url(url)
-          .header("User-Agent",
-              "Mozilla/5.0 (Windows NT 10.0; Win64; x64) AppleWebKit/537.36 (KHTML, like Gecko) Chrome/91.0.4472.124 Safari/537.36")
-          .build();
-
-      log.info("Calling Baidu search API with query: {}", query);
-      try (Response response = okHttpClient.newCall(request).execute()) {
-        if (!response.isSuccessful() || response.body() == null) {
-          return "搜索服务暂不可用";
-        }
-
-        // 百度搜索API返回HTML，这里简化处理，返回成功消息
-        // 实际生产环境中，需要解析HTML获取搜索结果
-        return String.format("搜索成功：已为您搜索 '%s'，请访问 %s 查看结果", query, url);
+  @Tool(name = "search_web", description = "使用搜索引擎获取实时信息",
+      maxConcurrency = 4, timeoutMs = 8000, cacheable = true, cacheTtlSeconds = 300, sharedCache = true)
+  public String searchWeb(@ToolParam(name = "query", description = "搜索关键词") String query) throws IOException {
+    log.info("Calling search with query: {}", query);
+    List<SearchResult> results = webSearchService.search(query);
+    if (results.isEmpty()) {
+      throw new ToolException(String.format("未找到与'%s'相关的结果", query));
+    }
+    StringBuilder text = new StringBuilder();
+    for (int i = 0; i < results.size(); i++) {
+      SearchResult result = results.get(i);
+      if (i > 0) {
+        text.append("\n\n");
+      }
+      text.append(i + 1).append(". ").append(result.getTitle()).append('\n');
+      text.append("链接：").append(result.getUrl());
+      if (!result.getSnippet().isEmpty()) {
+        text.append("\n摘要：").append(result.getSnippet());
+      }
+      if (result.getContent() != null && !result.getContent().isEmpty()) {
+        text.append("\n正文：").append(result.getContent());
       }
-    } catch (IOException error) {
-      log.error("Search API failed for query: {}, error: {}", query, error.getMessage());
-      return "搜索服务异常";
     }
+    return text.toString();
   }
 
   /**
    * 计算数学表达式
    * 
+   * <p>表达式无效时抛出异常而不是返回NaN，避免失败结果被工具注册表缓存。
+   * 
    * @param expr 数学表达式字符串
-   * @return 计算结果，如果表达式无效返回Double.NaN
+   * @return 计算结果
+   * @throws ToolException 表达式无效或无法计算
    */
-  public double calc(String expr) {
+  @Tool(name = "calc", description = "计算数学表达式", cacheable = true)
+  public double calc(@ToolParam(name = "expr", description = "数学表达式") String expr) {
     log.info("ToolService.calc方法被调用，开始计算表达式: {}", expr);
 
     try {
       // 使用exp4j构建并计算表达式
       Expression expression = new ExpressionBuilder(expr).build();
       double result = expression.evaluate();
+      if (!Double.isFinite(result)) {
+        throw new ArithmeticException("result is " + result);
+      }
       log.info("ToolService.calc方法执行成功，表达式: {}, 结果: {}", expr, result);
       return result;
     } catch (Exception error) {
       log.error("ToolService.calc方法执行失败，表达式: {}", expr, error);
-      // 表达式无效时返回NaN
-      return Double.NaN;
+      throw new ToolException("表达式无效: " + expr);
     }
   }
 }
@@ -0,0 +1,256 @@
+package com.example.app.service;
+
+import jakarta.annotation.PreDestroy;
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+/**
+ * 工具预执行：根据问题文本预测模型大概率会发起的工具调用，在首次模型调用进行时提前执行
+ *
+ * <p>模型随后请求同名且参数归一化后相同的调用时直接复用预执行结果，省去等待工具的时间；只差一个地名或数字的
+ * 参数不能复用，因此只忽略全半角、大小写、空白和句读标点的差异。
+ * 没有被认领的预测在本轮结束时取消并计为未命中。分类器只看关键词，宁可漏判也不误判。
+ * 预执行不等待工具的并发许可，失败的预执行结果不会交给模型，由真实调用重新执行。
+ */
+@Service
+public class ToolSpeculator {
+  private static final Logger log = LoggerFactory.getLogger(ToolSpeculator.class);
+  private static final Pattern FRESH_DATA = Pattern.compile(
+      "天气|气温|下雨|今天|今日|明天|昨天|最新|新闻|实时|现在|目前|股价|汇率|比分|行情|价格|多少钱|油价|票房|热搜|发布会"
+          + "|(?i:weather|today|latest|news|price|stock|score)");
+  private static final Pattern EXPRESSION = Pattern.compile("[\\d.()\\s]+(?:[-+*/^%][\\d.()\\s]+)+");
+  private static final Pattern SENTENCE_END = Pattern.compile("[。？！?!]");
+  // 比较参数时忽略的空白与句读标点，小数点、百分号、括号和运算符会改变含义，不在其中
+  private static final Pattern IGNORABLE = Pattern.compile("[\\s，。、；;：:？?！!\"'“”‘’「」《》]+");
+
+  private final ToolRegistry toolRegistry;
+  private final ExecutorService executor;
+  private final LongAdder predictions = new LongAdder();
+  private final LongAdder hits = new LongAdder();
+  private final LongAdder misses = new LongAdder();
+  private final LongAdder savedNanos = new LongAdder();
+
+  @Value("${speculation.enabled:true}")
+  private boolean enabled; // 是否启用工具预执行
+
+  @Value("${speculation.claim-timeout-ms:10000}")
+  private long claimTimeoutMs; // 认领时等待预执行结果的最长时间
+
+  /**
+   * 构造函数
+   *
+   * @param toolRegistry 工具注册表，预执行同样受各工具的并发、超时与缓存约束，但并发已满时直接放弃
+   */
+  public ToolSpeculator(ToolRegistry toolRegistry) {
+    this.toolRegistry = toolRegistry;
+    AtomicInteger counter = new AtomicInteger();
+    this.executor = Executors.newCachedThreadPool(task -> {
+      Thread thread = new Thread(task, "tool-speculation-" + counter.incrementAndGet());
+      thread.setDaemon(true);
+      return thread;
+    });
+  }
+
+  @PreDestroy
+  public void shutdown() {
+    executor.shutdownNow();
+  }
+
+  /**
+   * 预测并启动工具调用
+   *
+   * @param question 用户问题
+   * @return 本轮的预执行句柄，没有预测时不包含任何调用
+   */
+  public Speculation start(String question) {
+    Speculation speculation = new Speculation();
+    if (!enabled || question == null) {
+      return speculation;
+    }
+    for (Map.Entry<String, Map<String, Object>> predicted : predict(question).entrySet()) {
+      String name = predicted.getKey();
+      Map<String, Object> args = predicted.getValue();
+      predictions.increment();
+      log.info("Speculatively running {} with {}", name, args);
+      Prediction prediction = new Prediction(name, args);
+      prediction.future = executor.submit(() -> {
+        ToolRegistry.Outcome result = toolRegistry.speculate(name, args);
+        prediction.finishedAt = System.nanoTime();
+        return result;
+      });
+      speculation.predictions.add(prediction);
+    }
+    return speculation;
+  }
+
+  /**
+   * 预执行统计
+   *
+   * @return 预测次数、命中率与节省的等待时间
+   */
+  public Map<String, Object> stats() {
+    long predicted = predictions.sum();
+    long hit = hits.sum();
+    Map<String, Object> stats = new LinkedHashMap<>();
+    stats.put("predictions", predicted);
+    stats.put("hits", hit);
+    stats.put("misses", misses.sum());
+    stats.put("hitRate", predicted > 0 ? (double) hit / predicted : 0);
+    stats.put("savedMillis", TimeUnit.NANOSECONDS.toMillis(savedNanos.sum()));
+    stats.put("avgSavedMillis", hit > 0 ? savedNanos.sum() / 1_000_000.0 / hit : 0);
+    return stats;
+  }
+
+  /**
+   * 关键词分类：需要实时信息的问题预测search_web，问题中含算式时预测calc
+   */
+  private static Map<String, Map<String, Object>> predict(String question) {
+    Map<String, Map<String, Object>> predicted = new LinkedHashMap<>();
+    Matcher expression = EXPRESSION.matcher(question);
+    if (expression.find() && expression.group().chars().anyMatch(Character::isDigit)) {
+      predicted.put("calc", Map.of("expr", expression.group().trim()));
+    }
+    if (FRESH_DATA.matcher(question).find()) {
+      predicted.put("search_web", Map.of("query", searchQuery(question)));
+    }
+    return predicted;
+  }
+
+  /**
+   * 取问题的第一句作为搜索词，去掉“请给出来源”之类的附加要求
+   */
+  private static String searchQuery(String question) {
+    String trimmed = question.trim();
+    Matcher end = SENTENCE_END.matcher(trimmed);
+    while (end.find()) {
+      if (end.start() > 0) {
+        return trimmed.substring(0, end.start()).trim();
+      }
+    }
+    return trimmed;
+  }
+
+  private static boolean sameArgs(Map<String, Object> predicted, Map<String, Object> actual) {
+    if (actual == null || !predicted.keySet().equals(actual.keySet())) {
+      return false;
+    }
+    for (Map.Entry<String, Object> entry : predicted.entrySet()) {
+      Object expected = entry.getValue();
+      Object value = actual.get(entry.getKey());
+      if (expected instanceof String text && value instanceof String other) {
+        if (!normalize(text).equals(normalize(other))) {
+          return false;
+        }
+      } else if (!Objects.equals(String.valueOf(expected), String.valueOf(value))) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private static String normalize(String text) {
+    String normalized = Normalizer.normalize(text, Normalizer.Form.NFKC).toLowerCase(Locale.ROOT);
+    return IGNORABLE.matcher(normalized).replaceAll("");
+  }
+
+  /**
+   * 一次预测的工具调用
+   */
+  private static class Prediction {
+    private final String name;
+    private final Map<String, Object> args;
+    private final long startedAt = System.nanoTime();
+    private volatile long finishedAt;
+    private Future<ToolRegistry.Outcome> future;
+    private boolean claimed;
+
+    Prediction(String name, Map<String, Object> args) {
+      this.name = name;
+      this.args = args;
+    }
+  }
+
+  /**
+   * 一轮问答的预执行句柄，仅由处理该问答的线程使用
+   */
+  public final class Speculation {
+    private final List<Prediction> predictions = new ArrayList<>();
+
+    private Speculation() {
+    }
+
+    /**
+     * 认领与模型请求匹配的预执行结果
+     *
+     * @param name 模型请求的工具名称
+     * @param args 模型请求的参数
+     * @return 预执行结果，没有匹配的预测或预执行失败时返回null
+     */
+    public String claim(String name, Map<String, Object> args) {
+      for (Prediction prediction : predictions) {
+        if (prediction.claimed || !prediction.name.equals(name) || !sameArgs(prediction.args, args)) {
+          continue;
+        }
+        prediction.claimed = true;
+        long claimedAt = System.nanoTime();
+        try {
+          ToolRegistry.Outcome result = prediction.future.get(claimTimeoutMs, TimeUnit.MILLISECONDS);
+          if (!result.success()) {
+            misses.increment();
+            log.info("Speculative {} failed, executing again: {}", name, result.text());
+            return null;
+          }
+          hits.increment();
+          // 不预执行时工具要从认领时刻才开始跑，节省的时间是已经并行执行掉的部分
+          long ranFor = prediction.finishedAt - prediction.startedAt;
+          savedNanos.add(Math.max(0, Math.min(ranFor, claimedAt - prediction.startedAt)));
+          log.info("Speculative {} reused for {}", name, args);
+          return result.text();
+        } catch (InterruptedException error) {
+          Thread.currentThread().interrupt();
+          misses.increment();
+          return null;
+        } catch (ExecutionException | TimeoutException error) {
+          prediction.future.cancel(true);
+          misses.increment();
+          log.warn("Speculative {} unusable: {}", name, error.getMessage());
+          return null;
+        }
+      }
+      return null;
+    }
+
+    /**
+     * 结束本轮，取消所有未被认领的预测
+     */
+    public void finish() {
+      for (Prediction prediction : predictions) {
+        if (!prediction.claimed) {
+          prediction.future.cancel(true);
+          misses.increment();
+          log.info("Speculative {} with {} not requested, cancelled", prediction.name, prediction.args);
+        }
+      }
+      predictions.clear();
+    }
+  }
+}
@@ -0,0 +1,164 @@
+package com.example.app.service;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+/**
+ * 由 {@link SseEmitterRegistry} 跟踪的SSE发射器
+ *
+ * <p>记录创建时间、最近一次发送数据的时间以及尚未返回的写出，供注册表判断空闲、总时长超限与写出阻塞。
+ * 原生发射器的完成、超时、错误回调各只能注册一个，后注册的会覆盖前面的；
+ * 这里改为追加，多个订阅方（共享流、集群转发、注册表自身）可以各自注册清理逻辑。
+ */
+public class TrackedSseEmitter extends SseEmitter {
+  private static final Logger log = LoggerFactory.getLogger(TrackedSseEmitter.class);
+
+  private final String sessionId;
+  private final long createdAt = System.nanoTime();
+  private final List<Runnable> completionCallbacks = new CopyOnWriteArrayList<>();
+  private final List<Runnable> timeoutCallbacks = new CopyOnWriteArrayList<>();
+  private final List<Consumer<Throwable>> errorCallbacks = new CopyOnWriteArrayList<>();
+  private final AtomicBoolean closed = new AtomicBoolean();
+  private volatile long lastDataAt = createdAt; // 最近一次发送数据的时间，心跳不计入
+  private volatile long lastWriteAt = createdAt; // 最近一次写出的时间，含心跳
+  private final AtomicInteger pendingWrites = new AtomicInteger(); // 已开始但尚未返回的写出
+  private volatile long writeStartedAt; // 最早一次未返回的写出开始的时间
+
+  /**
+   * 构造函数
+   *
+   * @param sessionId 会话ID，仅用于日志
+   * @param timeoutMs 异步请求超时，作为注册表清理之外的兜底
+   */
+  TrackedSseEmitter(String sessionId, long timeoutMs) {
+    super(timeoutMs);
+    this.sessionId = sessionId;
+    super.onCompletion(this::fireCompletion);
+    super.onTimeout(() -> {
+      timeoutCallbacks.forEach(TrackedSseEmitter::runQuietly);
+      complete();
+    });
+    super.onError(error -> errorCallbacks.forEach(callback -> {
+      try {
+        callback.accept(error);
+      } catch (RuntimeException inner) {
+        log.warn("Emitter error callback failed: {}", inner.getMessage());
+      }
+    }));
+  }
+
+  public String getSessionId() {
+    return sessionId;
+  }
+
+  long createdAt() {
+    return createdAt;
+  }
+
+  long lastDataAt() {
+    return lastDataAt;
+  }
+
+  long lastWriteAt() {
+    return lastWriteAt;
+  }
+
+  /**
+   * 是否有写出已开始但尚未返回
+   */
+  boolean isWriting() {
+    return pendingWrites.get() > 0;
+  }
+
+  /**
+   * 未返回的写出开始的时间，仅在 {@link #isWriting()} 为真时有意义
+   */
+  long writeStartedAt() {
+    return writeStartedAt;
+  }
+
+  boolean isClosed() {
+    return closed.get();
+  }
+
+  @Override
+  public void onCompletion(Runnable callback) {
+    completionCallbacks.add(callback);
+  }
+
+  @Override
+  public void onTimeout(Runnable callback) {
+    timeoutCallbacks.add(callback);
+  }
+
+  @Override
+  public void onError(Consumer<Throwable> callback) {
+    errorCallbacks.add(callback);
+  }
+
+  @Override
+  public void send(SseEventBuilder builder) throws IOException {
+    beginWrite();
+    try {
+      super.send(builder);
+    } finally {
+      endWrite();
+    }
+    long now = System.nanoTime();
+    lastDataAt = now;
+    lastWriteAt = now;
+  }
+
+  /**
+   * 发送SSE注释行作为心跳，客户端会忽略注释，连接已断开时抛出异常
+   *
+   * @throws IOException 写出失败
+   */
+  void heartbeat() throws IOException {
+    beginWrite();
+    try {
+      super.send(event().comment("ping"));
+    } finally {
+      endWrite();
+    }
+    lastWriteAt = System.nanoTime();
+  }
+
+  private void beginWrite() {
+    long now = System.nanoTime();
+    if (pendingWrites.getAndIncrement() == 0) {
+      writeStartedAt = now;
+    }
+  }
+
+  private void endWrite() {
+    pendingWrites.decrementAndGet();
+  }
+
+  /**
+   * 立即执行完成回调，不等待容器的异步完成通知
+   *
+   * <p>注册表清理时使用：客户端半开连接上的完成通知可能迟迟不来，订阅方需要立刻释放上游调用。
+   * 之后容器再通知完成时不会重复执行。
+   */
+  void fireCompletion() {
+    if (closed.compareAndSet(false, true)) {
+      completionCallbacks.forEach(TrackedSseEmitter::runQuietly);
+    }
+  }
+
+  private static void runQuietly(Runnable callback) {
+    try {
+      callback.run();
+    } catch (RuntimeException error) {
+      log.warn("Emitter callback failed: {}", error.getMessage());
+    }
+  }
+}
@@ -0,0 +1,111 @@
+package com.example.app.service;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import org.springframework.stereotype.Component;
+
+/**
+ * 单位换算：形如“100公里等于多少英里”“5 kg in lb”的问题，按线性换算表直接计算
+ *
+ * <p>每个单位记录换算到本类基准单位的系数与偏移（温度需要偏移），只在同类单位之间换算。
+ */
+@Component
+public class UnitConversionIntent implements LocalIntent {
+  private static final Map<String, Unit> UNITS = new HashMap<>();
+  private static final Pattern CONVERSION;
+
+  static {
+    // 长度，基准为米
+    unit("千米", "length", 1000, 0, "千米", "公里", "km", "kilometer", "kilometers");
+    unit("米", "length", 1, 0, "米", "m", "meter", "meters", "metre", "metres");
+    unit("厘米", "length", 0.01, 0, "厘米", "cm");
+    unit("毫米", "length", 0.001, 0, "毫米", "mm");
+    unit("英里", "length", 1609.344, 0, "英里", "mile", "miles", "mi");
+    unit("码", "length", 0.9144, 0, "码", "yard", "yards", "yd");
+    unit("英尺", "length", 0.3048, 0, "英尺", "foot", "feet", "ft");
+    unit("英寸", "length", 0.0254, 0, "英寸", "inch", "inches");
+    unit("海里", "length", 1852, 0, "海里", "nmi");
+    unit("里", "length", 500, 0, "里");
+    // 质量，基准为千克
+    unit("吨", "mass", 1000, 0, "吨", "ton", "tons", "tonne", "tonnes");
+    unit("千克", "mass", 1, 0, "千克", "公斤", "kg", "kilogram", "kilograms");
+    unit("克", "mass", 0.001, 0, "克", "g", "gram", "grams");
+    unit("斤", "mass", 0.5, 0, "斤");
+    unit("两", "mass", 0.05, 0, "两");
+    unit("磅", "mass", 0.45359237, 0, "磅", "lb", "lbs", "pound", "pounds");
+    unit("盎司", "mass", 0.028349523125, 0, "盎司", "oz", "ounce", "ounces");
+    // 温度，基准为开尔文
+    unit("摄氏度", "temperature", 1, 273.15, "摄氏度", "摄氏", "°c", "celsius");
+    unit("华氏度", "temperature", 5.0 / 9, 459.67 * 5 / 9, "华氏度", "华氏", "°f", "fahrenheit");
+    unit("开尔文", "temperature", 1, 0, "开尔文", "kelvin");
+    // 体积，基准为升
+    unit("立方米", "volume", 1000, 0, "立方米", "m3");
+    unit("升", "volume", 1, 0, "升", "l", "liter", "liters", "litre", "litres");
+    unit("毫升", "volume", 0.001, 0, "毫升", "ml");
+    unit("加仑", "volume", 3.785411784, 0, "加仑", "gallon", "gallons", "gal");
+    // 速度，基准为米每秒
+    unit("千米每小时", "speed", 1 / 3.6, 0, "千米每小时", "公里每小时", "km/h", "kmh");
+    unit("英里每小时", "speed", 0.44704, 0, "英里每小时", "mph");
+    unit("米每秒", "speed", 1, 0, "米每秒", "m/s");
+
+    // 长的别名排在前面，避免“公里每小时”被“公里”截断
+    List<String> aliases = new ArrayList<>(UNITS.keySet());
+    aliases.sort(Comparator.comparingInt(String::length).reversed());
+    String unit = "(" + String.join("|", aliases.stream().map(Pattern::quote).toList()) + ")";
+    CONVERSION = Pattern.compile("^(?:请)?(?:把|将)?(-?\\d+(?:\\.\\d+)?)\\s*" + unit
+        + "\\s*(?:等于|是|合|折合|换算成|换算为|转换成|转换为|转成|换成|to|in|=|->)?\\s*(?:多少|几)?\\s*" + unit
+        + "\\s*(?:是多少|等于多少)?[\\s?。!]*$");
+  }
+
+  @Override
+  public String name() {
+    return "unit-conversion";
+  }
+
+  @Override
+  public String answer(String question) {
+    Matcher matcher = CONVERSION.matcher(question);
+    if (!matcher.matches()) {
+      return null;
+    }
+    Unit from = UNITS.get(matcher.group(2));
+    Unit to = UNITS.get(matcher.group(3));
+    if (!from.category.equals(to.category) || from == to) {
+      return null;
+    }
+    double value = Double.parseDouble(matcher.group(1));
+    double base = value * from.factor + from.offset;
+    double converted = (base - to.offset) / to.factor;
+    return LocalIntent.formatNumber(value, 12) + " " + from.name + " ≈ "
+        + LocalIntent.formatNumber(converted, 6) + " " + to.name;
+  }
+
+  private static void unit(String name, String category, double factor, double offset, String... aliases) {
+    Unit unit = new Unit(name, category, factor, offset);
+    for (String alias : aliases) {
+      UNITS.put(alias, unit);
+    }
+  }
+
+  /**
+   * 换算单位：基准值 = 数值 × factor + offset
+   */
+  private static class Unit {
+    private final String name;
+    private final String category;
+    private final double factor;
+    private final double offset;
+
+    Unit(String name, String category, double factor, double offset) {
+      this.name = name;
+      this.category = category;
+      this.factor = factor;
+      this.offset = offset;
+    }
+  }
+}
@@ -0,0 +1,315 @@
+package com.example.app.service;
+
+import com.example.app.model.TokenUsage;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+/**
+ * token计量服务，按客户端地址及API Key聚合用量，并执行滚动窗口预算
+ *
+ * <p>同时统计上游提示词缓存的命中情况，用于衡量缓存前缀带来的延迟与费用节省。
+ * 超过一个预算窗口没有调用的计量键会被移除，快照只包含近期活跃的调用方。
+ */
+@Service
+public class UsageMeter {
+  private static final Logger log = LoggerFactory.getLogger(UsageMeter.class);
+
+  private final ObjectMapper objectMapper;
+  private final Map<String, KeyUsage> usages = new ConcurrentHashMap<>();
+  private final PromptCacheUsage hitCalls = new PromptCacheUsage(); // 命中提示词缓存的调用
+  private final PromptCacheUsage missCalls = new PromptCacheUsage(); // 未命中的调用
+
+  @Value("${metering.budget-tokens:0}")
+  private long budgetTokens; // 滚动窗口内每个key的token预算，0表示不限制
+
+  @Value("${metering.budget-window-minutes:60}")
+  private int budgetWindowMinutes; // 滚动窗口长度（分钟）
+
+  @Value("${metering.snapshot-path:data/usage-snapshot.json}")
+  private String snapshotPath; // 用量快照文件路径
+
+  @Value("${metering.cache-hit-price-ratio:0.1}")
+  private double cacheHitPriceRatio; // 命中缓存的输入token相对未命中的单价比例
+
+  /**
+   * 构造函数
+   *
+   * @param objectMapper Jackson对象映射器
+   */
+  public UsageMeter(ObjectMapper objectMapper) {
+    this.objectMapper = objectMapper;
+  }
+
+  /**
+   * 解析计量键：以客户端地址为准，携带API Key时再附加Key的指纹
+   *
+   * <p>会话ID和API Key都由客户端随意指定且未经校验，不能单独作为计量键，否则更换即可绕过预算；
+   * 附加指纹只用于区分同一地址下的不同调用方。
+   *
+   * @param clientKey     客户端API Key，可为空
+   * @param clientAddress 客户端地址，可为空
+   * @return 计量键
+   */
+  public String resolveKey(String clientKey, String clientAddress) {
+    String key = clientAddress != null && !clientAddress.isBlank() ? "ip:" + clientAddress : "anonymous";
+    if (clientKey != null && !clientKey.isBlank()) {
+      key += "/key:" + fingerprint(clientKey);
+    }
+    return key;
+  }
+
+  /**
+   * 解析上游响应中的usage块，兼容DeepSeek与OpenAI的缓存命中字段
+   *
+   * @param usage usage节点
+   * @return token用量，usage缺失时返回null
+   */
+  public TokenUsage parseUsage(JsonNode usage) {
+    if (usage == null || !usage.isObject()) {
+      return null;
+    }
+    long cached = usage.path("prompt_cache_hit_tokens").asLong(
+        usage.path("prompt_tokens_details").path("cached_tokens").asLong(0));
+    return new TokenUsage(
+        usage.path("prompt_tokens").asLong(0),
+        usage.path("completion_tokens").asLong(0),
+        cached,
+        false);
+  }
+
+  /**
+   * 记录一次调用的用量
+   *
+   * @param key          计量键
+   * @param usage        token用量
+   * @param latencyNanos 调用延迟纳秒数，非流式为完整响应耗时，流式为首个内容块的延迟
+   */
+  public void record(String key, TokenUsage usage, long latencyNanos) {
+    long minute = currentMinute();
+    // 在compute中刷新最近使用时间，避免与空闲清理并发时写入已移除的条目
+    KeyUsage keyUsage = usages.compute(key, (k, existing) -> {
+      KeyUsage current = existing != null ? existing : new KeyUsage(budgetWindowMinutes);
+      current.lastMinute = minute;
+      return current;
+    });
+    keyUsage.calls.increment();
+    keyUsage.promptTokens.add(usage.getPromptTokens());
+    keyUsage.completionTokens.add(usage.getCompletionTokens());
+    keyUsage.cachedTokens.add(usage.getCachedTokens());
+    if (usage.isEstimated()) {
+      keyUsage.estimatedCalls.increment();
+    }
+    keyUsage.window.add(minute, usage.getTotalTokens());
+    if (!usage.isEstimated()) {
+      (usage.getCachedTokens() > 0 ? hitCalls : missCalls).add(usage, latencyNanos);
+    }
+    log.debug("Usage recorded for {}: prompt={}, completion={}, cached={}, estimated={}", key,
+        usage.getPromptTokens(), usage.getCompletionTokens(), usage.getCachedTokens(), usage.isEstimated());
+  }
+
+  /**
+   * 检查该键在滚动窗口内是否已超出预算
+   *
+   * @param key 计量键
+   * @return 是否超出预算
+   */
+  public boolean isOverBudget(String key) {
+    if (budgetTokens <= 0) {
+      return false;
+    }
+    KeyUsage keyUsage = usages.get(key);
+    return keyUsage != null && keyUsage.window.sum(currentMinute()) >= budgetTokens;
+  }
+
+  /**
+   * 各计量键的用量快照
+   *
+   * @return 按键排序的用量统计
+   */
+  public Map<String, Map<String, Object>> snapshot() {
+    long minute = currentMinute();
+    Map<String, Map<String, Object>> result = new TreeMap<>();
+    usages.forEach((key, usage) -> {
+      Map<String, Object> entry = new LinkedHashMap<>();
+      entry.put("calls", usage.calls.sum());
+      entry.put("promptTokens", usage.promptTokens.sum());
+      entry.put("completionTokens", usage.completionTokens.sum());
+      entry.put("cachedTokens", usage.cachedTokens.sum());
+      entry.put("estimatedCalls", usage.estimatedCalls.sum());
+      entry.put("windowTokens", usage.window.sum(minute));
+      entry.put("budgetTokens", budgetTokens);
+      result.put(key, entry);
+    });
+    return result;
+  }
+
+  /**
+   * 提示词缓存统计，只计入上游返回了usage的调用
+   *
+   * @return 命中率、节省比例以及命中与未命中调用的平均延迟
+   */
+  public Map<String, Object> promptCacheStats() {
+    long promptTokens = hitCalls.promptTokens.sum() + missCalls.promptTokens.sum();
+    long cachedTokens = hitCalls.cachedTokens.sum();
+    long calls = hitCalls.calls.sum() + missCalls.calls.sum();
+    Map<String, Object> stats = new LinkedHashMap<>();
+    stats.put("calls", calls);
+    stats.put("hitCalls", hitCalls.calls.sum());
+    stats.put("promptTokens", promptTokens);
+    stats.put("cachedTokens", cachedTokens);
+    stats.put("tokenHitRatio", promptTokens > 0 ? (double) cachedTokens / promptTokens : 0);
+    // 按单价比例折算：命中的输入token只按cacheHitPriceRatio计费
+    stats.put("promptCostSavingRatio",
+        promptTokens > 0 ? cachedTokens * (1 - cacheHitPriceRatio) / promptTokens : 0);
+    stats.put("avgHitLatencyMillis", hitCalls.avgLatencyMillis());
+    stats.put("avgMissLatencyMillis", missCalls.avgLatencyMillis());
+    return stats;
+  }
+
+  /**
+   * 定期移除空闲的计量键，并将用量快照写入本地磁盘，先写临时文件再原子替换
+   */
+  @Scheduled(fixedDelayString = "${metering.snapshot-interval-ms:60000}",
+      initialDelayString = "${metering.snapshot-interval-ms:60000}")
+  public void writeSnapshot() {
+    evictIdle();
+    if (usages.isEmpty()) {
+      return;
+    }
+    try {
+      Path target = Paths.get(snapshotPath).toAbsolutePath();
+      Files.createDirectories(target.getParent());
+      Path temp = target.resolveSibling(target.getFileName() + ".tmp");
+      Map<String, Object> document = new LinkedHashMap<>();
+      document.put("timestamp", System.currentTimeMillis());
+      document.put("usages", snapshot());
+      Files.write(temp, objectMapper.writerWithDefaultPrettyPrinter().writeValueAsBytes(document));
+      Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+      log.debug("Usage snapshot written to {}", target);
+    } catch (IOException error) {
+      log.warn("Write usage snapshot failed: {}", error.getMessage());
+    }
+  }
+
+  /**
+   * 移除超过一个预算窗口没有调用的计量键，它们的滚动窗口已全部过期
+   */
+  private void evictIdle() {
+    long minute = currentMinute();
+    int before = usages.size();
+    for (String key : usages.keySet()) {
+      usages.computeIfPresent(key, (k, usage) -> minute - usage.lastMinute > budgetWindowMinutes ? null : usage);
+    }
+    int evicted = before - usages.size();
+    if (evicted > 0) {
+      log.debug("Evicted {} idle usage keys", evicted);
+    }
+  }
+
+  private static long currentMinute() {
+    return TimeUnit.MILLISECONDS.toMinutes(System.currentTimeMillis());
+  }
+
+  private static String fingerprint(String clientKey) {
+    try {
+      byte[] digest = MessageDigest.getInstance("SHA-256").digest(clientKey.getBytes(StandardCharsets.UTF_8));
+      return HexFormat.of().formatHex(digest, 0, 6);
+    } catch (NoSuchAlgorithmException error) {
+      throw new IllegalStateException(error);
+    }
+  }
+
+  /**
+   * 单个计量键的累计用量，全部使用分段计数器，避免热点键上的锁竞争
+   */
+  private static class KeyUsage {
+    private final LongAdder calls = new LongAdder();
+    private final LongAdder promptTokens = new LongAdder();
+    private final LongAdder completionTokens = new LongAdder();
+    private final LongAdder cachedTokens = new LongAdder();
+    private final LongAdder estimatedCalls = new LongAdder();
+    private final RollingWindow window;
+    private volatile long lastMinute; // 最近一次调用所在的分钟
+
+    KeyUsage(int windowMinutes) {
+      this.window = new RollingWindow(Math.max(1, windowMinutes));
+    }
+  }
+
+  /**
+   * 一类调用的提示词缓存用量与延迟
+   */
+  private static class PromptCacheUsage {
+    private final LongAdder calls = new LongAdder();
+    private final LongAdder promptTokens = new LongAdder();
+    private final LongAdder cachedTokens = new LongAdder();
+    private final LongAdder latencyNanos = new LongAdder();
+
+    void add(TokenUsage usage, long latency) {
+      calls.increment();
+      promptTokens.add(usage.getPromptTokens());
+      cachedTokens.add(usage.getCachedTokens());
+      latencyNanos.add(latency);
+    }
+
+    double avgLatencyMillis() {
+      long count = calls.sum();
+      return count > 0 ? latencyNanos.sum() / 1_000_000.0 / count : 0;
+    }
+  }
+
+  /**
+   * 按分钟分桶的环形滚动窗口
+   *
+   * <p>桶过期时通过CAS重置，重置瞬间并发写入的少量token可能丢失，预算本身是软限制，可以接受。
+   */
+  private static class RollingWindow {
+    private final AtomicLongArray totals;
+    private final AtomicLongArray minutes;
+
+    RollingWindow(int size) {
+      this.totals = new AtomicLongArray(size);
+      this.minutes = new AtomicLongArray(size);
+    }
+
+    void add(long minute, long tokens) {
+      int index = (int) (minute % totals.length());
+      long stamp = minutes.get(index);
+      if (stamp != minute && minutes.compareAndSet(index, stamp, minute)) {
+        totals.set(index, 0);
+      }
+      totals.addAndGet(index, tokens);
+    }
+
+    long sum(long minute) {
+      long sum = 0;
+      for (int i = 0; i < totals.length(); i++) {
+        if (minutes.get(i) > minute - totals.length()) {
+          sum += totals.get(i);
+        }
+      }
+      return sum;
+    }
+  }
+}
@@ -0,0 +1,215 @@
+package com.example.app.service;
+
+import com.example.app.model.SearchResult;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.InterruptedIOException;
+import java.net.URLEncoder;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import okhttp3.Call;
+import okhttp3.Callback;
+import okhttp3.MediaType;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+import okio.Buffer;
+import okio.BufferedSource;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+/**
+ * 网页搜索服务：流式解析搜索结果页，并可并发抓取排名靠前的页面正文
+ */
+@Service
+public class WebSearchService {
+  private static final Logger log = LoggerFactory.getLogger(WebSearchService.class);
+  private static final String USER_AGENT =
+      "Mozilla/5.0 (Windows NT 10.0; Win64; x64) AppleWebKit/537.36 (KHTML, like Gecko) Chrome/91.0.4472.124 Safari/537.36";
+
+  private final OkHttpClient okHttpClient;
+
+  @Value("${search.endpoint:https://www.baidu.com/s}")
+  private String searchEndpoint; // 搜索引擎端点
+
+  @Value("${search.max-results:3}")
+  private int maxResults; // 提取的结果条数
+
+  @Value("${search.max-read-chars:1048576}")
+  private long maxReadChars; // 搜索结果页最多读取的字符数
+
+  @Value("${search.fetch-pages:0}")
+  private int fetchPages; // 并发抓取正文的结果页数量，0表示不抓取
+
+  @Value("${search.page-max-bytes:262144}")
+  private long pageMaxBytes; // 单个页面最多读取的字节数
+
+  @Value("${search.page-text-chars:1500}")
+  private int pageTextChars; // 单个页面正文最多保留的字符数
+
+  @Value("${search.page-deadline-ms:3000}")
+  private long pageDeadlineMs; // 页面抓取的整体截止时间
+
+  /**
+   * 构造函数
+   *
+   * @param okHttpClient OkHttp客户端实例
+   */
+  public WebSearchService(OkHttpClient okHttpClient) {
+    this.okHttpClient = okHttpClient;
+  }
+
+  /**
+   * 搜索并提取前若干条结果，提取足够结果后立即停止读取响应
+   *
+   * <p>请求在OkHttp线程中执行和解析，调用线程可被中断，中断时取消请求，不会继续阻塞在网络读取上。
+   *
+   * @param query 搜索关键词
+   * @return 搜索结果列表
+   * @throws IOException 搜索请求失败或调用线程被中断
+   */
+  public List<SearchResult> search(String query) throws IOException {
+    String encoded = URLEncoder.encode(query, StandardCharsets.UTF_8);
+    // 百度搜索格式示例：https://www.baidu.com/s?wd=关键词&rn=3
+    String url = String.format("%s?wd=%s&rn=%d", searchEndpoint, encoded, maxResults);
+    Request request = new Request.Builder()
+        .url(url)
+        .header("User-Agent", USER_AGENT) // 添加User-Agent头避免反爬虫
+        .build();
+
+    long start = System.nanoTime();
+    Call call = okHttpClient.newCall(request);
+    CompletableFuture<List<SearchResult>> extracted = new CompletableFuture<>();
+    call.enqueue(new Callback() {
+      @Override
+      public void onFailure(Call failed, IOException error) {
+        extracted.completeExceptionally(error);
+      }
+
+      @Override
+      public void onResponse(Call succeeded, Response response) {
+        try (response) {
+          if (!response.isSuccessful() || response.body() == null) {
+            throw new IOException("Search response invalid: " + response.code());
+          }
+          // 关闭响应即放弃未读取的剩余内容
+          extracted.complete(HtmlScanner.extractResults(
+              response.body().charStream(), maxResults, maxReadChars, response.request().url()));
+        } catch (IOException | RuntimeException error) {
+          extracted.completeExceptionally(error);
+        }
+      }
+    });
+    List<SearchResult> results;
+    try {
+      results = extracted.get();
+    } catch (InterruptedException error) {
+      call.cancel();
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException("Search interrupted");
+    } catch (ExecutionException error) {
+      throw error.getCause() instanceof IOException io ? io : new IOException(error.getCause());
+    }
+    log.info("Search '{}' extracted {} results in {} ms", query, results.size(),
+        TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+
+    if (fetchPages > 0 && !results.isEmpty()) {
+      fetchContents(results.subList(0, Math.min(fetchPages, results.size())));
+    }
+    return results;
+  }
+
+  /**
+   * 并发抓取结果页正文，受字节上限和整体截止时间约束，超时未完成的请求直接取消
+   *
+   * <p>抓取线程只返回正文，截止时间内完成的正文由调用线程写回结果，超时的抓取不会再修改结果。
+   *
+   * @param results 需要抓取正文的结果
+   */
+  private void fetchContents(List<SearchResult> results) {
+    long start = System.nanoTime();
+    List<Call> calls = new ArrayList<>();
+    List<CompletableFuture<String>> contents = new ArrayList<>();
+    for (SearchResult result : results) {
+      Request request = new Request.Builder()
+          .url(result.getUrl())
+          .header("User-Agent", USER_AGENT)
+          .build();
+      Call call = okHttpClient.newCall(request);
+      call.timeout().timeout(pageDeadlineMs, TimeUnit.MILLISECONDS);
+      calls.add(call);
+      CompletableFuture<String> content = new CompletableFuture<>();
+      contents.add(content);
+      call.enqueue(new Callback() {
+        @Override
+        public void onFailure(Call failed, IOException error) {
+          log.debug("Fetch page {} failed: {}", result.getUrl(), error.getMessage());
+          content.complete(null);
+        }
+
+        @Override
+        public void onResponse(Call succeeded, Response response) {
+          try (response) {
+            ResponseBody body = response.body();
+            if (response.isSuccessful() && body != null && isText(body.contentType())) {
+              content.complete(readMainText(body));
+            }
+          } catch (IOException error) {
+            log.debug("Read page {} failed: {}", result.getUrl(), error.getMessage());
+          } finally {
+            content.complete(null); // 已有正文时不生效
+          }
+        }
+      });
+    }
+
+    try {
+      CompletableFuture.allOf(contents.toArray(new CompletableFuture<?>[0])).get(pageDeadlineMs, TimeUnit.MILLISECONDS);
+    } catch (TimeoutException error) {
+      log.info("Page fetch deadline reached, cancelling unfinished requests");
+    } catch (ExecutionException error) {
+      log.debug("Fetch pages failed: {}", error.getMessage());
+    } catch (InterruptedException error) {
+      Thread.currentThread().interrupt();
+    } finally {
+      calls.forEach(Call::cancel);
+    }
+    int fetched = 0;
+    for (int i = 0; i < results.size(); i++) {
+      String text = contents.get(i).getNow(null);
+      if (text != null) {
+        results.get(i).setContent(text);
+        fetched++;
+      }
+    }
+    log.info("Fetched {}/{} pages in {} ms", fetched, results.size(),
+        TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+  }
+
+  private String readMainText(ResponseBody body) throws IOException {
+    // 最多读取pageMaxBytes字节，超出部分不再下载
+    Buffer buffer = new Buffer();
+    BufferedSource source = body.source();
+    while (buffer.size() < pageMaxBytes && source.read(buffer, pageMaxBytes - buffer.size()) != -1) {
+      // 继续读取直到达到上限或结束
+    }
+    MediaType contentType = body.contentType();
+    Charset charset = contentType != null ? contentType.charset(StandardCharsets.UTF_8) : StandardCharsets.UTF_8;
+    return HtmlScanner.extractMainText(
+        new InputStreamReader(buffer.inputStream(), charset), pageTextChars, Long.MAX_VALUE);
+  }
+
+  private static boolean isText(MediaType contentType) {
+    return contentType == null || "text".equals(contentType.type())
+        || contentType.subtype().contains("html") || contentType.subtype().contains("xml");
+  }
+}
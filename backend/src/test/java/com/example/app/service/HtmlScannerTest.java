@@ -0,0 +1,141 @@
+package com.example.app.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.example.app.model.SearchResult;
+import java.io.FilterReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.util.List;
+import okhttp3.HttpUrl;
+import org.junit.jupiter.api.Test;
+
+class HtmlScannerTest {
+  private static final HttpUrl BASE = HttpUrl.get("http://example.com/search/s?wd=test");
+
+  @Test
+  void skipsScriptStyleAndComments() throws IOException {
+    String html = "<html><head>"
+        + "<script>var a = 1 < 2; document.write(\"<h3><a href='/script'>Script</a></h3>\");</script>"
+        + "<style>h3 > a { color: red; }</style></head><body>"
+        + "<!-- <h3><a href=\"/comment\">Comment</a></h3> -->"
+        + "<h3><a href=\"/real\">Real result</a></h3><p>Real snippet</p>"
+        + "</body></html>";
+
+    List<SearchResult> results = extract(html, 5);
+
+    assertEquals(1, results.size());
+    assertEquals("Real result", results.get(0).getTitle());
+    assertEquals("http://example.com/real", results.get(0).getUrl());
+    assertEquals("Real snippet", results.get(0).getSnippet());
+  }
+
+  @Test
+  void decodesEntities() throws IOException {
+    String html = "<h3><a href=\"/s?a=1&amp;b=2\">Tom &amp; Jerry &lt;3&gt; &#x4E2D;&#25991;</a></h3>"
+        + "<p>&quot;quoted&quot;&nbsp;and &apos;single&apos; &unknown; AT&T</p>";
+
+    List<SearchResult> results = extract(html, 5);
+
+    assertEquals(1, results.size());
+    assertEquals("Tom & Jerry <3> 中文", results.get(0).getTitle());
+    assertEquals("http://example.com/s?a=1&b=2", results.get(0).getUrl());
+    assertEquals("\"quoted\" and 'single' &unknown; AT&T", results.get(0).getSnippet());
+  }
+
+  @Test
+  void resolvesRelativeHrefs() throws IOException {
+    String html = "<h3><a href=\"page1\">Relative</a></h3><p>one</p>"
+        + "<h3><a href='/root'>Absolute path</a></h3><p>two</p>"
+        + "<h3><a href=//cdn.example.org/x>Protocol relative</a></h3><p>three</p>"
+        + "<h3><a href=\"#top\">Anchor</a></h3><p>skipped</p>"
+        + "<h3><a href=\"javascript:void(0)\">Script link</a></h3><p>skipped</p>"
+        + "<h3><a href=\"https://other.example.net/a\">Full</a></h3><p>four</p>";
+
+    List<SearchResult> results = extract(html, 10);
+
+    assertEquals(4, results.size());
+    assertEquals("http://example.com/search/page1", results.get(0).getUrl());
+    assertEquals("http://example.com/root", results.get(1).getUrl());
+    assertEquals("http://cdn.example.org/x", results.get(2).getUrl());
+    assertEquals("https://other.example.net/a", results.get(3).getUrl());
+  }
+
+  @Test
+  void stopsReadingAfterLimit() throws IOException {
+    StringBuilder html = new StringBuilder();
+    for (int i = 1; i <= 2000; i++) {
+      html.append("<div><h3><a href=\"/page").append(i).append("\">Result ").append(i)
+          .append("</a></h3><p>Snippet ").append(i).append("</p></div>");
+    }
+    CountingReader reader = new CountingReader(new StringReader(html.toString()));
+
+    List<SearchResult> results = HtmlScanner.extractResults(reader, 3, Long.MAX_VALUE, BASE);
+
+    assertEquals(3, results.size());
+    assertEquals("Result 3", results.get(2).getTitle());
+    assertEquals("Snippet 3", results.get(2).getSnippet());
+    // 第4个标题出现后立即停止，只读取了一个缓冲区
+    assertTrue(reader.count <= 8192, "read " + reader.count + " of " + html.length() + " chars");
+  }
+
+  @Test
+  void stopsAtMaxChars() throws IOException {
+    String html = "<h3><a href=\"/a\">First</a></h3><p>one</p>" + "x".repeat(100)
+        + "<h3><a href=\"/b\">Second</a></h3><p>two</p>";
+
+    List<SearchResult> results = HtmlScanner.extractResults(new StringReader(html), 5, 60, BASE);
+
+    assertEquals(1, results.size());
+    assertEquals("First", results.get(0).getTitle());
+  }
+
+  @Test
+  void extractsMainTextWithoutBoilerplate() throws IOException {
+    String html = "<html><header>Site header</header><nav><ul><li>Home</li></ul></nav>"
+        + "<article><h1>Title</h1><p>First   paragraph.</p><p>Second paragraph.</p></article>"
+        + "<footer>Copyright</footer></html>";
+
+    String text = HtmlScanner.extractMainText(new StringReader(html), 1000, Long.MAX_VALUE);
+
+    assertEquals("Title\nFirst paragraph.\nSecond paragraph.", text);
+  }
+
+  @Test
+  void ignoresHeadingWithoutLink() throws IOException {
+    String html = "<h2>Related searches</h2><p>noise</p><h3><a href=\"/x\">Linked</a></h3><p>kept</p>";
+
+    List<SearchResult> results = extract(html, 5);
+
+    assertEquals(1, results.size());
+    assertEquals("Linked", results.get(0).getTitle());
+    assertNull(results.get(0).getContent());
+  }
+
+  private static List<SearchResult> extract(String html, int limit) throws IOException {
+    return HtmlScanner.extractResults(new StringReader(html), limit, Long.MAX_VALUE, BASE);
+  }
+
+  /**
+   * 统计实际读取的字符数
+   */
+  private static class CountingReader extends FilterReader {
+    private long count;
+
+    CountingReader(Reader in) {
+      super(in);
+    }
+
+    @Override
+    public int read(char[] buffer, int offset, int length) throws IOException {
+      int n = super.read(buffer, offset, length);
+      if (n > 0) {
+        count += n;
+      }
+      return n;
+    }
+  }
+}
@@ -0,0 +1,101 @@
+package com.example.app.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+class SemanticAnswerCacheTest {
+  private final HashingEmbedder embedder = new HashingEmbedder(128);
+  private SemanticAnswerCache cache;
+
+  @BeforeEach
+  void setUp() {
+    cache = new SemanticAnswerCache();
+    ReflectionTestUtils.setField(cache, "enabled", true);
+    ReflectionTestUtils.setField(cache, "threshold", 0.82);
+    ReflectionTestUtils.setField(cache, "maxEntries", 1000);
+    ReflectionTestUtils.setField(cache, "ttlMinutes", 30L);
+    ReflectionTestUtils.setField(cache, "dimensions", 128);
+    ReflectionTestUtils.setField(cache, "efSearch", 32);
+    cache.init();
+  }
+
+  @Test
+  void numberVariantsMissEvenWhenVectorsAreSimilar() {
+    assertVariantMisses("iPhone 15 Pro的售价是多少", "iPhone 16 Pro的售价是多少");
+    assertVariantMisses("2022 world cup winner", "2018 world cup winner");
+    assertVariantMisses("2023年比亚迪的营收是多少", "2024年比亚迪的营收是多少");
+    assertVariantMisses("第十届全运会在哪里举办", "第十一届全运会在哪里举办");
+  }
+
+  @Test
+  void entityVariantsMiss() {
+    assertVariantMisses("Tesla Model 3 续航多少公里", "Tesla Model Y 续航多少公里");
+    assertVariantMisses("电影“你好李焕英”的票房和主要演员有哪些", "电影“你好李焕之”的票房和主要演员有哪些");
+    assertVariantMisses("杭州今天天气", "苏州今天天气");
+    assertVariantMisses("中国的首都是哪里", "美国的首都是哪里");
+  }
+
+  @Test
+  void relativeDayVariantsMiss() {
+    assertVariantMisses("明天上海天气", "今天上海天气");
+  }
+
+  @Test
+  void paraphrasesHit() {
+    cache.put("北京今天天气怎么样", "晴");
+    assertEquals("晴", cache.lookup("今天北京天气如何？"));
+
+    cache.put("iPhone 15 Pro的售价是多少", "7999元");
+    assertEquals("7999元", cache.lookup("iphone15 pro售价是多少呢"));
+
+    cache.put("who won the 2022 world cup", "Argentina");
+    assertEquals("Argentina", cache.lookup("Who won the World Cup in 2022?"));
+  }
+
+  @Test
+  void variantDoesNotOverwriteNeighbour() {
+    cache.put("iPhone 15 Pro的售价是多少", "7999元");
+    cache.put("iPhone 16 Pro的售价是多少", "8999元");
+
+    assertEquals("7999元", cache.lookup("iPhone 15 Pro的售价是多少"));
+    assertEquals("8999元", cache.lookup("iPhone 16 Pro的售价是多少"));
+    assertEquals(2, cache.stats().get("entries"));
+  }
+
+  @Test
+  void signatureIgnoresOrderAndFillerWords() {
+    assertEquals(FactSignature.of("What is the 2022 World Cup"), FactSignature.of("world cup 2022"));
+    assertEquals(FactSignature.of("iPhone15"), FactSignature.of("ｉＰｈｏｎｅ 15"));
+    assertEquals(FactSignature.of("请介绍一下今天的天气"), FactSignature.of("今日天气"));
+    assertEquals(FactSignature.of("北京今天天气怎么样"), FactSignature.of("今天北京天气如何？"));
+    assertEquals("", FactSignature.of("what is it?"));
+    assertNotEquals(FactSignature.of("杭州今天天气"), FactSignature.of("苏州今天天气"));
+    assertNotEquals(FactSignature.of("2023年营收1200亿元"), FactSignature.of("2024年营收1350亿元"));
+  }
+
+  /**
+   * 两个问题的向量相似度已超过阈值，但缓存不能互相命中
+   */
+  private void assertVariantMisses(String cached, String asked) {
+    double similarity = dot(embedder.embed(cached), embedder.embed(asked));
+    assertTrue(similarity >= 0.82, "expected similar vectors, got " + similarity + " for " + asked);
+
+    cache.put(cached, "answer for " + cached);
+    assertNull(cache.lookup(asked), asked);
+    assertEquals("answer for " + cached, cache.lookup(cached));
+  }
+
+  private static double dot(float[] a, float[] b) {
+    double sum = 0;
+    for (int i = 0; i < a.length; i++) {
+      sum += a[i] * b[i];
+    }
+    return sum;
+  }
+}
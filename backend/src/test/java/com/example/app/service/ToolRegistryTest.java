@@ -0,0 +1,88 @@
+package com.example.app.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.context.support.GenericApplicationContext;
+
+class ToolRegistryTest {
+  private GenericApplicationContext context;
+  private ToolRegistry registry;
+
+  @BeforeEach
+  void setUp() {
+    context = new GenericApplicationContext();
+    context.registerBean(SlowTools.class);
+    context.refresh();
+    registry = new ToolRegistry(context, new ObjectMapper(), new ClusterCache(null));
+    registry.init();
+  }
+
+  @AfterEach
+  void tearDown() {
+    registry.shutdown();
+    context.close();
+  }
+
+  @Test
+  void permitsAreReturnedAfterBurstOfTimeouts() throws Exception {
+    ExecutorService callers = Executors.newFixedThreadPool(40);
+    try {
+      List<Future<String>> results = new ArrayList<>();
+      for (int i = 0; i < 40; i++) {
+        String text = "call" + i;
+        results.add(callers.submit(() -> registry.execute("slow_echo", Map.of("text", text, "millis", 100))));
+      }
+      for (Future<String> result : results) {
+        result.get(30, TimeUnit.SECONDS);
+      }
+    } finally {
+      callers.shutdownNow();
+    }
+    // 等待超时后仍在运行的任务结束
+    Thread.sleep(300);
+
+    assertEquals(0, registry.stats().get("slow_echo").get("running"));
+    assertEquals("again", registry.execute("slow_echo", Map.of("text", "again", "millis", 100)));
+  }
+
+  @Test
+  void timeoutStartsAfterPermitIsAcquired() throws Exception {
+    ExecutorService callers = Executors.newFixedThreadPool(2);
+    try {
+      Future<String> first = callers.submit(
+          () -> registry.execute("slow_echo", Map.of("text", "first", "millis", 250)));
+      Thread.sleep(50);
+      // 等待许可约200毫秒，执行仍有完整的300毫秒
+      Future<String> second = callers.submit(
+          () -> registry.execute("slow_echo", Map.of("text", "second", "millis", 200)));
+
+      assertEquals("first", first.get(5, TimeUnit.SECONDS));
+      assertEquals("second", second.get(5, TimeUnit.SECONDS));
+    } finally {
+      callers.shutdownNow();
+    }
+  }
+
+  /**
+   * 并发为1、超时300毫秒的慢工具
+   */
+  static class SlowTools {
+    @Tool(name = "slow_echo", description = "慢速回显", maxConcurrency = 1, timeoutMs = 300)
+    public String slowEcho(@ToolParam(name = "text", description = "文本") String text,
+        @ToolParam(name = "millis", description = "执行耗时") long millis) throws InterruptedException {
+      Thread.sleep(millis);
+      return text;
+    }
+  }
+}
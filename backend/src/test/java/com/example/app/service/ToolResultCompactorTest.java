@@ -0,0 +1,95 @@
+package com.example.app.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.List;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+class ToolResultCompactorTest {
+  private final HashingEmbedder embedder = new HashingEmbedder(256);
+  private ToolResultCompactor compactor;
+
+  @BeforeEach
+  void setUp() {
+    compactor = new ToolResultCompactor();
+    ReflectionTestUtils.setField(compactor, "enabled", true);
+    ReflectionTestUtils.setField(compactor, "toolTokenBudget", 1200);
+    ReflectionTestUtils.setField(compactor, "turnTokenBudget", 2400);
+    ReflectionTestUtils.setField(compactor, "duplicateSimilarity", 0.9);
+  }
+
+  @Test
+  void keepsSentencesThatDifferOnlyInNumbers() {
+    String first = "摘要：苹果公司宣布iPhone 15 Pro在中国大陆的起售价为7999元，首批机型将于九月下旬开始陆续发货。"
+        + "官方表示今年的备货量比去年明显增加。";
+    String second = "摘要：苹果公司宣布iPhone 15 Pro在中国大陆的起售价为8999元，首批机型将于九月下旬开始陆续发货。"
+        + "官方表示今年的备货量比去年明显增加。";
+    assertSimilar("苹果公司宣布iPhone 15 Pro在中国大陆的起售价为7999元，首批机型将于九月下旬开始陆续发货。",
+        "苹果公司宣布iPhone 15 Pro在中国大陆的起售价为8999元，首批机型将于九月下旬开始陆续发货。");
+
+    List<String> compacted = compactor.compact("iPhone 15 Pro售价", List.of(first, second));
+
+    assertEquals(first, compacted.get(0));
+    assertTrue(compacted.get(1).contains("8999元"), compacted.get(1));
+    // 完全相同的句子仍然去掉
+    assertFalse(compacted.get(1).contains("备货量"), compacted.get(1));
+  }
+
+  @Test
+  void keepsSentencesThatDifferOnlyInDecimalPoint() {
+    String first = "正文：根据公司年报披露，2023年全年营业收入同比增长3.5%，净利润继续保持稳定增长的态势。";
+    String second = "正文：根据公司年报披露，2023年全年营业收入同比增长35%，净利润继续保持稳定增长的态势。";
+
+    List<String> compacted = compactor.compact("公司营收增长", List.of(first, second));
+
+    assertEquals(List.of(first, second), compacted);
+    assertEquals(0L, compactor.stats().get("duplicatesRemoved"));
+  }
+
+  @Test
+  void removesNearDuplicatesWithSameFacts() {
+    String first = "摘要：北京今天白天晴转多云，最高气温26℃，最低气温15℃，空气质量良，适宜户外活动。";
+    String second = "摘要：北京今天白天晴转多云，最高气温是26℃，最低气温是15℃，空气质量良，适宜户外活动！";
+    assertSimilar("北京今天白天晴转多云，最高气温26℃，最低气温15℃，空气质量良，适宜户外活动。",
+        "北京今天白天晴转多云，最高气温是26℃，最低气温是15℃，空气质量良，适宜户外活动！");
+
+    List<String> compacted = compactor.compact("北京天气", List.of(first, second));
+
+    assertEquals(first, compacted.get(0));
+    assertEquals("", compacted.get(1));
+    assertEquals(1L, compactor.stats().get("duplicatesRemoved"));
+  }
+
+  @Test
+  void keepsSentencesThatDifferOnlyInEntityName() {
+    String first = "摘要：杭州今天白天晴转多云，最高气温26℃，最低气温15℃，空气质量良，适宜户外活动。";
+    String second = "摘要：苏州今天白天晴转多云，最高气温26℃，最低气温15℃，空气质量良，适宜户外活动。";
+    assertSimilar("杭州今天白天晴转多云，最高气温26℃，最低气温15℃，空气质量良，适宜户外活动。",
+        "苏州今天白天晴转多云，最高气温26℃，最低气温15℃，空气质量良，适宜户外活动。");
+
+    List<String> compacted = compactor.compact("杭州和苏州的天气", List.of(first, second));
+
+    assertEquals(List.of(first, second), compacted);
+    assertEquals(0L, compactor.stats().get("duplicatesRemoved"));
+  }
+
+  /**
+   * 两句话的向量相似度已超过去重阈值，是否去重只取决于事实签名
+   */
+  private void assertSimilar(String first, String second) {
+    double similarity = dot(embedder.embed(first), embedder.embed(second));
+    assertTrue(similarity >= 0.9, "expected similar vectors, got " + similarity);
+  }
+
+  private static double dot(float[] a, float[] b) {
+    double sum = 0;
+    for (int i = 0; i < a.length; i++) {
+      sum += a[i] * b[i];
+    }
+    return sum;
+  }
+}
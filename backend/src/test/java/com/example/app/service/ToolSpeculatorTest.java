@@ -0,0 +1,79 @@
+package com.example.app.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.util.Map;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.context.support.GenericApplicationContext;
+import org.springframework.test.util.ReflectionTestUtils;
+
+class ToolSpeculatorTest {
+  private GenericApplicationContext context;
+  private ToolRegistry registry;
+  private ToolSpeculator speculator;
+
+  @BeforeEach
+  void setUp() {
+    context = new GenericApplicationContext();
+    context.registerBean(EchoTools.class);
+    context.refresh();
+    registry = new ToolRegistry(context, new ObjectMapper(), new ClusterCache(null));
+    registry.init();
+    speculator = new ToolSpeculator(registry);
+    ReflectionTestUtils.setField(speculator, "enabled", true);
+    ReflectionTestUtils.setField(speculator, "claimTimeoutMs", 5000L);
+  }
+
+  @AfterEach
+  void tearDown() {
+    speculator.shutdown();
+    registry.shutdown();
+    context.close();
+  }
+
+  @Test
+  void reusesArgumentsThatDifferOnlyInFormatting() {
+    ToolSpeculator.Speculation speculation = speculator.start("北京今天天气怎么样？请给出来源");
+
+    assertEquals("北京今天天气怎么样", speculation.claim("search_web", Map.of("query", "北京 今天天气怎么样?")));
+    speculation.finish();
+    assertEquals(1L, speculator.stats().get("hits"));
+  }
+
+  @Test
+  void doesNotReuseArgumentsWithDifferentEntity() {
+    ToolSpeculator.Speculation speculation = speculator.start("北京今天天气怎么样");
+
+    assertNull(speculation.claim("search_web", Map.of("query", "上海今天天气怎么样")));
+    speculation.finish();
+    assertEquals(0L, speculator.stats().get("hits"));
+  }
+
+  @Test
+  void doesNotReuseExpressionWithDifferentDecimalPoint() {
+    ToolSpeculator.Speculation speculation = speculator.start("算一下 3.5*2 等于多少");
+
+    assertNull(speculation.claim("calc", Map.of("expr", "35*2")));
+    assertEquals("3.5*2", speculation.claim("calc", Map.of("expr", "3.5 * 2")));
+    speculation.finish();
+  }
+
+  /**
+   * 原样返回参数的搜索与计算工具
+   */
+  static class EchoTools {
+    @Tool(name = "search_web", description = "搜索")
+    public String searchWeb(@ToolParam(name = "query", description = "搜索词") String query) {
+      return query;
+    }
+
+    @Tool(name = "calc", description = "计算")
+    public String calc(@ToolParam(name = "expr", description = "表达式") String expr) {
+      return expr;
+    }
+  }
+}
@@ -0,0 +1,149 @@
+package com.example.app.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.example.app.model.SearchResult;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import okhttp3.OkHttpClient;
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+class WebSearchServiceTest {
+  private static final String RESULT_PAGE = "<html><head><script>var s = '<h3>x</h3>';</script></head><body>"
+      + "<div><h3><a href=\"/fast\">Fast page</a></h3><p>Fast snippet</p></div>"
+      + "<div><h3><a href=\"/slow\">Slow page</a></h3><p>Slow snippet</p></div>"
+      + "<div><h3><a href=\"/missing\">Missing page</a></h3><p>Missing snippet</p></div>"
+      + "<div><h3><a href=\"/extra\">Extra page</a></h3><p>Extra snippet</p></div>"
+      + "</body></html>";
+
+  private MockWebServer server;
+  private WebSearchService service;
+
+  @BeforeEach
+  void setUp() throws IOException {
+    server = new MockWebServer();
+    server.setDispatcher(new Dispatcher() {
+      @Override
+      public MockResponse dispatch(RecordedRequest request) {
+        String path = request.getRequestUrl().encodedPath();
+        switch (path) {
+          case "/s":
+            return html(RESULT_PAGE);
+          case "/fast":
+            return html("<nav>menu</nav><article><p>Fast body text.</p></article>");
+          case "/slow":
+            return html("<article><p>Slow body text.</p></article>").setHeadersDelay(2, TimeUnit.SECONDS);
+          default:
+            return new MockResponse().setResponseCode(404);
+        }
+      }
+    });
+    server.start();
+
+    service = new WebSearchService(new OkHttpClient());
+    ReflectionTestUtils.setField(service, "searchEndpoint", server.url("/s").toString());
+    ReflectionTestUtils.setField(service, "maxResults", 3);
+    ReflectionTestUtils.setField(service, "maxReadChars", 1048576L);
+    ReflectionTestUtils.setField(service, "fetchPages", 0);
+    ReflectionTestUtils.setField(service, "pageMaxBytes", 262144L);
+    ReflectionTestUtils.setField(service, "pageTextChars", 1500);
+    ReflectionTestUtils.setField(service, "pageDeadlineMs", 500L);
+  }
+
+  @AfterEach
+  void tearDown() throws IOException {
+    server.shutdown();
+  }
+
+  @Test
+  void extractsResultsFromResultPage() throws Exception {
+    List<SearchResult> results = service.search("北京 天气");
+
+    assertEquals(3, results.size());
+    assertEquals("Fast page", results.get(0).getTitle());
+    assertEquals(server.url("/fast").toString(), results.get(0).getUrl());
+    assertEquals("Fast snippet", results.get(0).getSnippet());
+    assertEquals("Missing page", results.get(2).getTitle());
+    assertNull(results.get(0).getContent());
+
+    RecordedRequest request = server.takeRequest();
+    assertEquals("北京 天气", request.getRequestUrl().queryParameter("wd"));
+    assertEquals("3", request.getRequestUrl().queryParameter("rn"));
+    assertEquals(1, server.getRequestCount());
+  }
+
+  @Test
+  void keepsOnlyContentFetchedBeforeDeadline() throws Exception {
+    ReflectionTestUtils.setField(service, "fetchPages", 3);
+
+    long start = System.nanoTime();
+    List<SearchResult> results = service.search("pages");
+    long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+    assertEquals("Fast body text.", results.get(0).getContent());
+    assertNull(results.get(1).getContent());
+    assertNull(results.get(2).getContent());
+    assertTrue(elapsedMillis < 1500, "waited " + elapsedMillis + " ms for a 500 ms deadline");
+
+    // 慢页面被取消后也不会再写回结果
+    Thread.sleep(2200);
+    assertNull(results.get(1).getContent());
+  }
+
+  @Test
+  void failsOnErrorStatus() {
+    ReflectionTestUtils.setField(service, "searchEndpoint", server.url("/unknown").toString());
+
+    assertThrows(IOException.class, () -> service.search("query"));
+  }
+
+  @Test
+  void interruptCancelsSearchRequest() throws Exception {
+    ReflectionTestUtils.setField(service, "searchEndpoint", server.url("/slow").toString());
+    ExecutorService executor = Executors.newSingleThreadExecutor();
+    try {
+      Future<List<SearchResult>> search = executor.submit(() -> service.search("query"));
+      Thread.sleep(200);
+      long start = System.nanoTime();
+      search.cancel(true);
+      executor.shutdown();
+
+      // 被中断的线程不再阻塞在2秒的响应上
+      assertTrue(executor.awaitTermination(1, TimeUnit.SECONDS), "search thread still blocked");
+      assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) < 1000);
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  @Test
+  void interruptedSearchThrowsInterruptedIoException() throws Exception {
+    ReflectionTestUtils.setField(service, "searchEndpoint", server.url("/slow").toString());
+    Thread.currentThread().interrupt();
+    try {
+      assertThrows(InterruptedIOException.class, () -> service.search("query"));
+      assertTrue(Thread.interrupted());
+    } finally {
+      Thread.interrupted();
+    }
+  }
+
+  private static MockResponse html(String body) {
+    return new MockResponse().setHeader("Content-Type", "text/html; charset=utf-8").setBody(body);
+  }
+}